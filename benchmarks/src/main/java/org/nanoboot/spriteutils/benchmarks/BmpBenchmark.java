@@ -0,0 +1,109 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import net.sf.image4j.codec.bmp.BMPDecoder;
+import net.sf.image4j.codec.bmp.BMPEncoder;
+import org.nanoboot.spriteutils.image.MappedBmpDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding and encoding of BMP sheets.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BmpBenchmark {
+
+    @Param({"256", "4096"})
+    private int sprites;
+
+    private File dir;
+    private File sheet;
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("sprite-utils-benchmark").toFile();
+        sheet = new File(dir, "sheet.bmp");
+        image = SyntheticData.createSheet(sprites);
+        SyntheticData.writeSheet(image, sheet);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticData.delete(dir);
+    }
+
+    /**
+     * Both decoders are measured with reading of all pixels, because the
+     * mapped decoder reads them only when the raster is accessed.
+     */
+    @Benchmark
+    public void decodeImage4j(Blackhole blackhole) throws IOException {
+        consumePixels(BMPDecoder.read(sheet), blackhole);
+    }
+
+    @Benchmark
+    public void decodeMapped(Blackhole blackhole) {
+        consumePixels(MappedBmpDecoder.decode(sheet), blackhole);
+    }
+
+    @Benchmark
+    public byte[] encodeImage4j() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) sheet.length());
+        BMPEncoder.write(image, out);
+        return out.toByteArray();
+    }
+
+    private static void consumePixels(BufferedImage decoded, Blackhole blackhole) {
+        Raster raster = decoded.getRaster();
+        Object row = null;
+        for (int y = 0; y < raster.getHeight(); y++) {
+            row = raster.getDataElements(0, y, raster.getWidth(), 1, row);
+            blackhole.consume(row);
+        }
+    }
+}
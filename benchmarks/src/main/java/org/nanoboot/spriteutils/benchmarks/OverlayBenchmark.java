@@ -0,0 +1,99 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.nanoboot.spriteutils.image.SpriteOverlayRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of the rectangles and numbers drawn by the draw command.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlayBenchmark {
+
+    private static final int STEP = SyntheticData.SPRITE_SIZE + 1;
+
+    @Param({"256", "4096"})
+    private int sprites;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        image = SyntheticData.createSheet(sprites);
+    }
+
+    /**
+     * All sprites of the sheet, as drawn by the draw command.
+     *
+     * @return renderer
+     */
+    @Benchmark
+    public SpriteOverlayRenderer drawSprites() {
+        SpriteOverlayRenderer renderer = new SpriteOverlayRenderer(image);
+        for (int i = 0; i < sprites; i++) {
+            int x = (i % SyntheticData.COLUMNS) * STEP;
+            int y = (i / SyntheticData.COLUMNS) * STEP;
+            renderer.drawSprite(x, y, SyntheticData.SPRITE_SIZE, SyntheticData.SPRITE_SIZE, i + 1);
+        }
+        return renderer;
+    }
+
+    @Benchmark
+    public SpriteOverlayRenderer drawRectangles() {
+        SpriteOverlayRenderer renderer = new SpriteOverlayRenderer(image);
+        for (int i = 0; i < sprites; i++) {
+            int x = (i % SyntheticData.COLUMNS) * STEP;
+            int y = (i / SyntheticData.COLUMNS) * STEP;
+            renderer.drawRectangle(x, y, SyntheticData.SPRITE_SIZE, SyntheticData.SPRITE_SIZE);
+        }
+        return renderer;
+    }
+
+    @Benchmark
+    public SpriteOverlayRenderer drawNumbers() {
+        SpriteOverlayRenderer renderer = new SpriteOverlayRenderer(image);
+        for (int i = 0; i < sprites; i++) {
+            int x = (i % SyntheticData.COLUMNS) * STEP;
+            int y = (i / SyntheticData.COLUMNS) * STEP;
+            renderer.drawNumber(i + 1, x + SyntheticData.SPRITE_SIZE - 2, y + SyntheticData.SPRITE_SIZE - 1);
+        }
+        return renderer;
+    }
+}
@@ -0,0 +1,111 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.nanoboot.spriteutils.core.SpriteSheet;
+import org.nanoboot.spriteutils.core.SpriteSheetCsvParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing and loading of spritesheet.csv files.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpriteSheetBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private File dir;
+    private File manifest;
+    private File compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("sprite-utils-benchmark").toFile();
+        manifest = new File(dir, "spritesheet.csv");
+        SyntheticData.writeManifest(manifest, rows);
+        //Manifests modified just now are not compiled.
+        manifest.setLastModified(System.currentTimeMillis() - 60_000);
+        //The computed and compiled files are written by the first load, the next loads find them up to date.
+        new SpriteSheet(manifest);
+        compiled = new File(dir, "spritesheet.csv.compiled");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticData.delete(dir);
+    }
+
+    /**
+     * Parsing only, the rows are not stored.
+     *
+     * @param blackhole blackhole
+     */
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        new SpriteSheetCsvParser().parse(manifest, blackhole::consume);
+    }
+
+    /**
+     * Parsing, indexing, resolving of the layout, the check of the computed
+     * file and writing of the compiled file.
+     *
+     * @return sprite sheet
+     */
+    @Benchmark
+    public SpriteSheet load() {
+        compiled.delete();
+        return new SpriteSheet(manifest);
+    }
+
+    /**
+     * Mapping of the up to date compiled file.
+     *
+     * @return sprite sheet
+     */
+    @Benchmark
+    public SpriteSheet loadCompiled() {
+        return new SpriteSheet(manifest);
+    }
+}
@@ -0,0 +1,98 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import org.nanoboot.spriteutils.core.SpriteSheetCsvWriter;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of single rows, as done for every row of the computed file.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteSheetRowBenchmark {
+
+    private SpriteSheetRow row;
+    private SpriteSheetCsvWriter writer;
+
+    @Setup
+    public void setUp() {
+        row = new SpriteSheetRow(SyntheticData.createCsvLine(SyntheticData.COLUMNS * 3));
+        row.setX(1234);
+        row.setNumberPerSheet(49);
+        writer = new SpriteSheetCsvWriter(new NullChannel());
+    }
+
+    @Benchmark
+    public String toCsvLine() {
+        return row.toCsvLine();
+    }
+
+    /**
+     * The row is written into the buffer of the writer, which is flushed
+     * whenever it is full.
+     *
+     * @throws IOException never
+     */
+    @Benchmark
+    public void writeRow() throws IOException {
+        writer.writeRow(row);
+    }
+
+    private static class NullChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer src) {
+            int remaining = src.remaining();
+            src.position(src.limit());
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            //Nothing to do.
+        }
+    }
+}
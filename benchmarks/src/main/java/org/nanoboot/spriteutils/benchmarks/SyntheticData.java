@@ -0,0 +1,154 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import net.sf.image4j.codec.bmp.BMPEncoder;
+
+/**
+ * Generator of synthetic sprite sheets and spritesheet.csv manifests.
+ *
+ * Every sheet is a grid of square sprites separated by one pixel. The manifest
+ * uses the same shortcuts as the real ones: x is omitted and the height is
+ * relative for all sprites except the first one of every row. The generated
+ * data is deterministic, so the results of different runs are comparable.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public final class SyntheticData {
+
+    public static final String HEADER = "file;group;numberInGroup;row;column;x;y;width;height;notes;tags";
+    public static final int SPRITE_SIZE = 32;
+    public static final int COLUMNS = 16;
+    public static final int SPRITES_PER_GROUP = 8;
+    public static final int SPRITES_PER_SHEET = 256;
+    private static final long SEED = 42L;
+
+    private SyntheticData() {
+        //Not meant to be instantiated.
+    }
+
+    /**
+     * Writes a manifest with the given number of rows. A new sheet is started
+     * after every {@link #SPRITES_PER_SHEET} sprites.
+     *
+     * @param file manifest to write
+     * @param rows number of rows without the header
+     * @throws IOException if the manifest could not be written
+     */
+    public static void writeManifest(File file, int rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                writer.write(createCsvLine(i));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @param i index of the row in the manifest
+     * @return csv line of the row, as it would be written by hand
+     */
+    public static String createCsvLine(int i) {
+        int sheet = i / SPRITES_PER_SHEET;
+        int numberPerSheet = i % SPRITES_PER_SHEET;
+        int row = numberPerSheet / COLUMNS + 1;
+        int column = numberPerSheet % COLUMNS + 1;
+        int y = (row - 1) * (SPRITE_SIZE + 1);
+        int height = column == 1 ? SPRITE_SIZE : 0;
+        return "sheet" + sheet + ".bmp;"
+                + "group" + (numberPerSheet / SPRITES_PER_GROUP) + ";"
+                + (numberPerSheet % SPRITES_PER_GROUP + 1) + ";"
+                + row + ";"
+                + column + ";"
+                + ";"
+                + y + ";"
+                + SPRITE_SIZE + ";"
+                + height + ";"
+                + (i % 10 == 0 ? "note " + i : "") + ";"
+                + (i % 3 == 0 ? "tag" : "");
+    }
+
+    /**
+     * Creates an 8-bit indexed sheet filled with noise, big enough for the
+     * given number of sprites.
+     *
+     * @param sprites number of sprites
+     * @return sheet
+     */
+    public static BufferedImage createSheet(int sprites) {
+        int rows = (sprites + COLUMNS - 1) / COLUMNS;
+        int width = COLUMNS * (SPRITE_SIZE + 1);
+        int height = Math.max(1, rows) * (SPRITE_SIZE + 1);
+        Random random = new Random(SEED);
+        byte[] r = new byte[256];
+        byte[] g = new byte[256];
+        byte[] b = new byte[256];
+        random.nextBytes(r);
+        random.nextBytes(g);
+        random.nextBytes(b);
+        //The overlay colours must be present in the palette.
+        r[0] = (byte) 255;
+        g[0] = 0;
+        b[0] = 0;
+        r[1] = g[1] = b[1] = (byte) 255;
+        r[2] = g[2] = b[2] = 0;
+        IndexColorModel colorModel = new IndexColorModel(8, 256, r, g, b);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        random.nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        return image;
+    }
+
+    /**
+     * Writes the image as a BMP file.
+     *
+     * @param image image
+     * @param file file to write
+     * @throws IOException if the file could not be written
+     */
+    public static void writeSheet(BufferedImage image, File file) throws IOException {
+        BMPEncoder.write(image, file);
+    }
+
+    /**
+     * Deletes the directory including its content.
+     *
+     * @param dir directory
+     */
+    public static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        dir.delete();
+    }
+}
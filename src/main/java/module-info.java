@@ -25,5 +25,6 @@ module spriteutils {
     requires powerframework.collections;
     requires dev.mccue.guava.io;
     requires java.desktop;
+    requires jdk.management;
     requires image4j;
 }
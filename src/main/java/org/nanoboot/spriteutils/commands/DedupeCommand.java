@@ -0,0 +1,212 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.commands;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.BatchProcessor;
+import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.SpriteSheet;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
+import org.nanoboot.spriteutils.core.Utils;
+import org.nanoboot.spriteutils.image.BmpImages;
+import org.nanoboot.spriteutils.image.SpriteHashes;
+
+/**
+ * Finds sprites with the same pixels, optionally also similar sprites, and
+ * groups consisting of the same sprites.
+ *
+ * Sprites are the same, if they have the same exact hash. Sprites are
+ * similar, if the Hamming distance of their difference hashes is not bigger
+ * than the given similarity. Nothing is changed, the found duplicates are
+ * logged and optionally written to a CSV report.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class DedupeCommand implements Command {
+
+    private static final Logger LOG = LogManager.getLogger(DedupeCommand.class);
+    public static final String NAME = "dedupe";
+    public static final String SIMILARITY = "similarity";
+    public static final String OUTPUT = "output";
+    private static final String EXACT = "exact";
+    private static final String SIMILAR = "similar";
+    private static final String GROUP = "group";
+
+    public DedupeCommand() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
+        BatchProcessor batchProcessor = new BatchProcessor(spriteUtilsArgs);
+        //-1 disables the search for similar sprites
+        int similarity = spriteUtilsArgs.getIntArgument(SIMILARITY, -1, 0, Long.SIZE);
+        SpriteSheet spriteSheet = batchProcessor.loadSpriteSheet();
+        List<File> files = batchProcessor.findSheetFiles(spriteSheet);
+        LOG.info("Looking for duplicate sprites in {} file(s)", files.size());
+
+        ConcurrentLinkedQueue<SpriteHash> queue = new ConcurrentLinkedQueue<>();
+        batchProcessor.forEach(files, f -> hash(f, spriteSheet.getSpriteSheets(f.getName()), similarity >= 0, queue));
+        List<SpriteHash> hashes = new ArrayList<>(queue);
+        hashes.sort(Comparator.comparing((SpriteHash h) -> h.row.getFile()).thenComparingInt(h -> h.row.getNumberPerSheet()));
+
+        List<String[]> report = new ArrayList<>();
+        Map<String, List<SpriteHash>> byExactHash = new LinkedHashMap<>();
+        hashes.forEach(h -> byExactHash.computeIfAbsent(h.exactHash, k -> new ArrayList<>()).add(h));
+        int duplicates = 0;
+        for (Map.Entry<String, List<SpriteHash>> e : byExactHash.entrySet()) {
+            if (e.getValue().size() > 1) {
+                duplicates = duplicates + e.getValue().size() - 1;
+                report.add(new String[]{EXACT, e.getKey(), toIds(e.getValue())});
+            }
+        }
+        int similarSets = 0;
+        if (similarity >= 0) {
+            for (List<SpriteHash> set : findSimilar(new ArrayList<>(byExactHash.values()), similarity)) {
+                similarSets++;
+                report.add(new String[]{SIMILAR, Long.toHexString(set.get(0).differenceHash), toIds(set)});
+            }
+        }
+        int groupSets = 0;
+        for (Map.Entry<String, List<String>> e : findSameGroups(hashes).entrySet()) {
+            groupSets++;
+            report.add(new String[]{GROUP, Utils.calculateSHA256Hash(e.getKey()), String.join(",", e.getValue())});
+        }
+
+        for (String[] line : report) {
+            LOG.info("Found {} duplicates: {}", line[0], line[2]);
+        }
+        if (spriteUtilsArgs.hasArgument(OUTPUT)) {
+            StringBuilder sb = new StringBuilder("type;hash;sprites\n");
+            report.forEach(line -> sb.append(String.join(";", line)).append('\n'));
+            Utils.writeTextToFile(sb.toString(), new File(spriteUtilsArgs.getArgument(OUTPUT)));
+        }
+        String result = "Found " + duplicates + " duplicate sprite(s), " + similarSets + " set(s) of similar sprites and "
+                + groupSets + " set(s) of duplicate groups among " + hashes.size() + " sprite(s)";
+        LOG.info(result);
+        return result;
+    }
+
+    private static void hash(File file, List<SpriteSheetRow> rows, boolean differenceHash, ConcurrentLinkedQueue<SpriteHash> result) {
+        BufferedImage image = BmpImages.readOriginal(file);
+        for (SpriteSheetRow r : rows) {
+            BufferedImage sprite = BmpImages.getSprite(image, r);
+            if (sprite == null) {
+                LOG.warn("Sprite lies outside of the image: {}", r.createId());
+                continue;
+            }
+            result.add(new SpriteHash(r, SpriteHashes.calculateExactHash(sprite),
+                    differenceHash ? SpriteHashes.calculateDifferenceHash(sprite) : 0));
+        }
+    }
+
+    /**
+     * Joins the sets of the same sprites, whose difference hashes are close
+     * enough. Only the sets joined with at least one other set are returned.
+     */
+    private static List<List<SpriteHash>> findSimilar(List<List<SpriteHash>> sameSprites, int similarity) {
+        int count = sameSprites.size();
+        int[] parents = new int[count];
+        for (int i = 0; i < count; i++) {
+            parents[i] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            long a = sameSprites.get(i).get(0).differenceHash;
+            for (int j = i + 1; j < count; j++) {
+                if (SpriteHashes.getHammingDistance(a, sameSprites.get(j).get(0).differenceHash) <= similarity) {
+                    parents[findRoot(parents, j)] = findRoot(parents, i);
+                }
+            }
+        }
+        Map<Integer, List<Integer>> sets = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            sets.computeIfAbsent(findRoot(parents, i), k -> new ArrayList<>()).add(i);
+        }
+        List<List<SpriteHash>> result = new ArrayList<>();
+        for (List<Integer> set : sets.values()) {
+            if (set.size() > 1) {
+                List<SpriteHash> sprites = new ArrayList<>();
+                set.forEach(i -> sprites.addAll(sameSprites.get(i)));
+                result.add(sprites);
+            }
+        }
+        return result;
+    }
+
+    private static int findRoot(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    /**
+     * @return groups (file and group name) consisting of the same sprites in
+     * the same order by their content, only contents of more groups are
+     * returned
+     */
+    private static Map<String, List<String>> findSameGroups(List<SpriteHash> hashes) {
+        Map<String, List<SpriteHash>> groups = new LinkedHashMap<>();
+        hashes.forEach(h -> groups.computeIfAbsent(h.row.getFile() + "__" + h.row.getGroup(), k -> new ArrayList<>()).add(h));
+        Map<String, List<String>> groupsByContent = new LinkedHashMap<>();
+        for (Map.Entry<String, List<SpriteHash>> e : groups.entrySet()) {
+            String content = e.getValue().stream()
+                    .sorted(Comparator.comparingInt(h -> h.row.getNumberInGroup()))
+                    .map(h -> h.exactHash)
+                    .collect(Collectors.joining(","));
+            groupsByContent.computeIfAbsent(content, k -> new ArrayList<>()).add(e.getKey());
+        }
+        groupsByContent.values().removeIf(g -> g.size() < 2);
+        return groupsByContent;
+    }
+
+    private static String toIds(List<SpriteHash> hashes) {
+        return hashes.stream().map(h -> h.row.createId()).collect(Collectors.joining(","));
+    }
+
+    private static class SpriteHash {
+
+        private final SpriteSheetRow row;
+        private final String exactHash;
+        private final long differenceHash;
+
+        SpriteHash(SpriteSheetRow row, String exactHash, long differenceHash) {
+            this.row = row;
+            this.exactHash = exactHash;
+            this.differenceHash = differenceHash;
+        }
+    }
+}
@@ -18,27 +18,29 @@
 ///////////////////////////////////////////////////////////////////////////////////////////////
 package org.nanoboot.spriteutils.commands;
 
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Stroke;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
 import java.io.File;
-import java.io.IOException;
-import java.util.function.BiConsumer;
-import java.util.function.BiFunction;
-import java.util.function.Supplier;
-import lombok.AllArgsConstructor;
-import net.sf.image4j.codec.bmp.BMPDecoder;
-import net.sf.image4j.codec.bmp.BMPEncoder;
-import net.sf.image4j.codec.bmp.BMPImage;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.Backups;
+import org.nanoboot.spriteutils.core.BatchProcessor;
 import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.FileHashes;
+import org.nanoboot.spriteutils.core.Metrics;
+import org.nanoboot.spriteutils.core.OutputCache;
 import org.nanoboot.spriteutils.core.SpriteSheet;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.nanoboot.spriteutils.core.SpriteSpatialIndex;
 import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
-import org.nanoboot.spriteutils.core.SpriteUtilsException;
 import org.nanoboot.spriteutils.core.Utils;
+import org.nanoboot.spriteutils.image.BmpImages;
+import org.nanoboot.spriteutils.image.BmpPatchWriter;
+import org.nanoboot.spriteutils.image.SpriteOverlayRenderer;
 
 /**
  *
@@ -48,6 +50,12 @@ public class DrawCommand implements Command {
 
     private static final Logger LOG = LogManager.getLogger(DrawCommand.class);
     public static final String NAME = "draw";
+    /**
+     * Part of the keys of the cached outputs, must be changed, whenever the
+     * output for the same input changes.
+     */
+    private static final String RENDERING_VERSION = "1";
+    private static final int MAX_WARNINGS = 20;
 
     public DrawCommand() {
 
@@ -58,348 +66,114 @@ public class DrawCommand implements Command {
         return NAME;
     }
 
-    private static final BiFunction<Integer, Integer, Integer> random = (min, max) -> {
-        int diff = max - min;
-        int i = (int) (Math.random() * diff);
-        return min + i;
-    };
-
     @Override
     public String run(SpriteUtilsArgs bitBackupArgs) {
-        File workingDirectory = new File("/home/robertvokac/Desktop/speedy_eggbert/speedy_eggbert_I/IMAGE08");
-        File testFile = new File(workingDirectory, "blupi000.blp");
-        File backupFile = new File(testFile.getAbsolutePath() + ".backup");
-        if (backupFile.exists()) {
-            testFile.delete();
-            Utils.copyFile(backupFile, testFile);
-        } else {
-            Utils.copyFile(testFile, backupFile);
-        }
-
-        BMPImage image = null;
-        File file = testFile;
-        try {
-            image = BMPDecoder.readExt(file);
-        } catch (IOException ex) {
-            throw new SpriteUtilsException("Reading image failed: " + file.getAbsolutePath() + " " + ex.getMessage());
-        }
-        BufferedImage bi = image.getImage();
-        Graphics2D g = bi.createGraphics();
-
-        Supplier<Integer> randomByte = () -> random.apply(0, 255);
-
-        final int height = image.getHeight();
-        final int width = image.getWidth();
-        g.setColor(Color.red);
-        Stroke originalStroke = g.getStroke();
-        Stroke dashedStroke = new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.CAP_SQUARE,
-                0, new float[]{1, 3}, 0);
-        g.setStroke(dashedStroke);
-        //g.drawRect(0,0, 28,19);
-        SpriteSheet spriteSheet = new SpriteSheet(new File(workingDirectory, "spritesheet.csv"));
-        spriteSheet.getSpriteSheets(testFile.getName()).forEach(r -> {
-            int startX = r.getX();
-            int endX = startX + r.getWidth();
-            int startY = r.getY();
-            int endY = startY + r.getHeight();
-            drawNumber(r.getNumberPerSheet(), g, endX - 2, endY - 1);
-            
-//            
-//            int x = 0;
-//            int y = 0;
-//            
-//            int aaa = 3;
-//            x = startX;y = startY;
-//            g.setStroke(originalStroke);
-//            g.drawLine(x, y, x + aaa, y);
-//            g.drawLine(x, y, x, y + aaa);
-//            
-//            x = endX;y = startY;
-//            g.drawLine(x, y, x - aaa, y);
-//            g.drawLine(x, y, x, y + aaa);
-//            
-//            x = startX;y = endY;
-//            g.drawLine(x, y, x + aaa, y);
-//            g.drawLine(x, y, x, y - aaa);
-//            
-//            x = endX;y = endY;
-//            g.drawLine(x, y, x - aaa, y);
-//            g.drawLine(x, y, x, y - aaa);
-
-            g.setStroke(dashedStroke);
-
-            g.drawRect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
-        });
-//        for (int i = 0; i <= 100; i++) {
-//            g.setStroke(new BasicStroke(random.apply(1,3)));
-//
-//            g.setColor(new Color(randomByte.get(), randomByte.get(), randomByte.get()));
-//
-//            int h = random.apply(10, 100);
-//            int w = random.apply(10, 100);
-//            int x = random.apply(1, width);
-//            int y = random.apply(1, height);
-//            if ((x + w) > width) {
-//                x = x - w - random.apply(5, 25);
-//            }
-//            if ((y + h) > height) {
-//                y = y - h - random.apply(5, 25);
-//            }
-//            g.drawRect(x, y, w, h);
-//        }
-        g.dispose();
-        try {
-            BMPEncoder.write(bi, testFile);
-        } catch (IOException ex) {
-            throw new SpriteUtilsException("Writing image failed: " + file.getAbsolutePath() + " " + ex.getMessage());
-        }
-        System.out.println("getColourCount=" + image.getColourCount());
-        System.out.println("getColourDepth=" + image.getColourDepth());
-        System.out.println("getHeight=" + height);
-        System.out.println("getWidth=" + width);
-        System.out.println("isIndexed=" + image.isIndexed());
+        BatchProcessor batchProcessor = new BatchProcessor(bitBackupArgs);
+        SpriteSheet spriteSheet = batchProcessor.loadSpriteSheet();
+        List<File> files = batchProcessor.findSheetFiles(spriteSheet);
+        OutputCache cache = OutputCache.create(batchProcessor, bitBackupArgs);
+        String options = OutputCache.describeOptions(bitBackupArgs);
+        LOG.info("Drawing sprites of {} file(s) using {} thread(s)", files.size(), batchProcessor.getThreads());
+        FileHashes fileHashes = batchProcessor.getFileHashes();
+        AtomicInteger cached = new AtomicInteger();
+        batchProcessor.pipeline(files,
+                f -> {
+                    DrawJob job = load(f, spriteSheet.getSpriteSheets(f.getName()), cache, options, fileHashes);
+                    if (job == null) {
+                        cached.incrementAndGet();
+                    }
+                    return job;
+                },
+                (f, job) -> render(job, spriteSheet.getSpatialIndex(f.getName())),
+                (f, job) -> store(job, cache));
+        fileHashes.save();
+        LOG.info("Drawn {} file(s), {} of them taken from the cache", files.size(), cached.get());
         return "";
-
     }
 
-    @AllArgsConstructor
-    static class Point {
+    /**
+     * Creates the backup and reads the original image.
+     *
+     * @return job or null, if the output was taken from the cache
+     */
+    private static DrawJob load(File testFile, List<SpriteSheetRow> rows, OutputCache cache, String options, FileHashes fileHashes) {
+        File backupFile = Backups.backup(testFile);
+        String key = null;
+        if (cache != null) {
+            StringBuilder sb = new StringBuilder();
+            rows.forEach(r -> sb.append(r.toCsvLine()).append('\n'));
+            key = cache.createKey(NAME, RENDERING_VERSION, options, fileHashes.getHash(backupFile), Utils.calculateSHA256Hash(sb.toString()));
+            if (cache.restore(key, testFile)) {
+                return null;
+            }
+        }
+        return new DrawJob(testFile, backupFile, rows, key, BmpImages.read(backupFile));
+    }
 
-        int x;
-        int y;
+    private static DrawJob render(DrawJob job, SpriteSpatialIndex spatialIndex) {
+        validate(job.file, spatialIndex, job.original.getWidth(), job.original.getHeight());
+        BufferedImage bi = BmpImages.copy(job.original);
+        SpriteOverlayRenderer renderer = new SpriteOverlayRenderer(bi);
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.RENDER)) {
+            job.rows.forEach(r -> renderer.drawSprite(r.getX(), r.getY(), r.getWidth(), r.getHeight(), r.getNumberPerSheet()));
+            timer.addPixels(renderer.getPixelsDrawn());
+        }
+        job.drawn = bi;
+        job.dirtyRows = renderer.getDirtyRows();
+        return job;
+    }
 
-        void addToX(int n) {
-            x = x + n;
+    /**
+     * Logs the overlapping sprites and the sprites exceeding the image, at
+     * most {@link #MAX_WARNINGS} of each kind.
+     */
+    private static void validate(File file, SpriteSpatialIndex spatialIndex, int width, int height) {
+        List<SpriteSheetRow> outOfBounds = spatialIndex.findOutOfBounds(width, height);
+        for (int i = 0; i < Math.min(outOfBounds.size(), MAX_WARNINGS); i++) {
+            LOG.warn("Sprite exceeds the image of size {}x{}: {}", width, height, outOfBounds.get(i).createId());
         }
-
-        void addToY(int n) {
-            y = y + n;
+        List<SpriteSheetRow[]> overlaps = spatialIndex.findOverlaps();
+        for (int i = 0; i < Math.min(overlaps.size(), MAX_WARNINGS); i++) {
+            LOG.warn("Sprites overlap: {} and {}", overlaps.get(i)[0].createId(), overlaps.get(i)[1].createId());
         }
-
-        Point createClone() {
-            return new Point(x, y);
+        if (outOfBounds.size() > MAX_WARNINGS || overlaps.size() > MAX_WARNINGS) {
+            LOG.warn("{} has {} sprite(s) exceeding the image and {} pair(s) of overlapping sprites", file.getName(), outOfBounds.size(), overlaps.size());
         }
     }
 
-    private static void drawNumber(int number, Graphics2D g, int endX, int endY) {
-        //number = random.apply(100, 900);
-        System.out.println("number = " + number);
-        Point end = new Point(endX, endY);
-        String ns = String.valueOf(number);
-        
-        Color oldColor = g.getColor();
-        g.setColor(Color.WHITE);
-        g.fillRect(endX + 1, endY - 5, 1, 6);
-        g.setColor(oldColor);
-        
-        
-        for (int i = 0; i < ns.length(); i++) {
-            char ch = ns.charAt(ns.length() - 1 - i);
-            String s = String.valueOf(ch);
-            drawANumber(Integer.valueOf(s), g, end.x - (i * 4), end.y);
-
+    private static void store(DrawJob job, OutputCache cache) {
+        File testFile = job.file;
+        BufferedImage bi = job.drawn;
+        long written = BmpPatchWriter.write(testFile, job.backupFile, bi, job.dirtyRows);
+        LOG.debug("Written {} bytes to {}", written, testFile.getName());
+        if (LOG.isTraceEnabled()) {
+            ColorModel colorModel = bi.getColorModel();
+            boolean indexed = colorModel instanceof IndexColorModel;
+            LOG.trace("{}: getColourCount={}, getColourDepth={}, getHeight={}, getWidth={}, isIndexed={}",
+                    testFile.getName(), indexed ? ((IndexColorModel) colorModel).getMapSize() : 0,
+                    colorModel.getPixelSize(), bi.getHeight(), bi.getWidth(), indexed);
+        }
+        if (cache != null) {
+            cache.store(job.key, testFile);
         }
     }
 
-         private static final boolean[] data0 = new boolean[]{
-                true, true, true,
-                true, false, true,
-                true, false, true,
-                true, false, true,
-                true, true, true};
-           private static final boolean[] data1 = new boolean[]{
-                false, false, true,
-                false, true, true,
-                true, false, true,
-                false, false, true,
-                false, false, true};
-          private static final boolean[] data2 = new boolean[]{
-                true, true, true,
-                false, false, true,
-                false, true, false,
-                true, false, false,
-                true, true, true};
-         private static final boolean[] data3 = new boolean[]{
-                true, true, true,
-                false, false, true,
-                true, true, true,
-                false, false, true,
-                true, true, true};
-          private static final boolean[] data4 = new boolean[]{
-                false, false, true,
-                false, true, false,
-                true, true, true,
-                false, false, true,
-                false, false, true};
-        private static final boolean[] data5 = new boolean[]{
-                true, true, true,
-                true, false, false,
-                true, true, true,
-                false, false, true,
-                true, true, true};
-         private static final boolean[] data6 = new boolean[]{
-                true, true, true,
-                true, false, false,
-                true, true, true,
-                true, false, true,
-                true, true, true};
-        private static final boolean[] data7 = new boolean[]{
-                true, true, true,
-                false, false, true,
-                false, false, true,
-                false, false, true,
-                false, false, true};
-         private static final boolean[] data8 = new boolean[]{
-                true, true, true,
-                true, false, true,
-                true, true, true,
-                true, false, true,
-                true, true, true};
-        private static final boolean[] data9 = new boolean[]{
-                true, true, true,
-                true, false, true,
-                true, true, true,
-                false, false, true,
-                false, false, true};
-        
-    private static void drawANumber(int number, Graphics2D g, int endX, int endY) {
-        System.out.println("drawNumber " +number + " " + endX + " " + endY);
-        Point end = new Point(endX, endY);
-        String ns = String.valueOf(number);
-char c = ns.charAt(0);
-        Point start = end.createClone();
-Point p = start;
-        start.addToX(-2);
-        start.addToY(-4);
-        Color oldColor = g.getColor();
-        g.setColor(Color.WHITE);
-        g.fillRect(start.x-1, start.y-1, 4, 6);
-//        if (true) {
-//            g.setColor(oldColor);
-//            return;
-//        }
-        g.setColor(Color.BLACK);
+    private static class DrawJob {
 
+        private final File file;
+        private final File backupFile;
+        private final List<SpriteSheetRow> rows;
+        private final String key;
+        private final BufferedImage original;
+        private BufferedImage drawn;
+        private BitSet dirtyRows;
 
-            switch (c) {
-                case '0':
-                    drawANumber(g, p, data0);
-                    break;
-                case '1':
-                    drawANumber(g, p, data1);
-                    break;
-                case '2':
-                    drawANumber(g, p, data2);
-                    break;
-                case '3':
-                    drawANumber(g, p, data3);
-                    break;
-                case '4':
-                    drawANumber(g, p, data4);
-                    break;
-                case '5':
-                    drawANumber(g, p, data5);
-                    break;
-                case '6':
-                    drawANumber(g, p, data6);
-                    break;
-                case '7':
-                    drawANumber(g, p, data7);
-                    break;
-                case '8':
-                    drawANumber(g, p, data8);
-                    break;
-                case '9':
-                    drawANumber(g, p, data9);
-                    break;
-                default:
-                    throw new SpriteUtilsException("Character is not supported: " + c);
-            }
-
-    
-        g.setColor(oldColor);
-    }
-
-    private static void drawANumber(Graphics2D g, Point start, boolean[] data) {
-        
-        BiConsumer<Integer, Integer> drawPixel = (x, y) -> 
-        {
-            System.out.println("Drawing pixel: " + x + " " + y);
-            //g.setColor(Color.ORANGE);
-            g.fillRect(start.x + x, start.y + y, 1, 1);
-            //g.drawLine(start.x + x, start.y + y, start.x + x, start.y + y);
-        };
-        //drawPixel.accept(1,1);
-        //if(true) return;
-        int i = 0;
-        int X = 0;
-        int Y = 0;
-        
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X = 0;
-        Y++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X = 0;
-        Y++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
+        DrawJob(File file, File backupFile, List<SpriteSheetRow> rows, String key, BufferedImage original) {
+            this.file = file;
+            this.backupFile = backupFile;
+            this.rows = rows;
+            this.key = key;
+            this.original = original;
         }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X = 0;
-        Y++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X = 0;
-        Y++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X++;
-        if (data[i++]) {
-            drawPixel.accept(X, Y);
-        }
-        X = 0;
-        Y++;
-
     }
 }
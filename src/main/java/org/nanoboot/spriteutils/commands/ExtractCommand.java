@@ -0,0 +1,134 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.commands;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.BatchProcessor;
+import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.SpriteSheet;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+import org.nanoboot.spriteutils.image.BmpImages;
+
+/**
+ * Extracts every sprite to its own image file named {group}_{number in
+ * group}. If more sprites of one file would get the same name, the next ones
+ * get a suffix _2, _3, ... and a warning is logged.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class ExtractCommand implements Command {
+
+    private static final Logger LOG = LogManager.getLogger(ExtractCommand.class);
+    public static final String NAME = "extract";
+    public static final String OUTPUT = "output";
+    public static final String FORMAT = "format";
+
+    public ExtractCommand() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
+        BatchProcessor batchProcessor = new BatchProcessor(spriteUtilsArgs);
+        String format = spriteUtilsArgs.hasArgument(FORMAT) ? spriteUtilsArgs.getArgument(FORMAT) : BmpImages.PNG;
+        if (format == null || format.isBlank()) {
+            throw new SpriteUtilsException("Option " + FORMAT + " requires a value, for example " + FORMAT + "=" + BmpImages.PNG);
+        }
+        format = format.toLowerCase();
+        File outputDirectory = spriteUtilsArgs.hasArgument(OUTPUT)
+                ? new File(spriteUtilsArgs.getArgument(OUTPUT)) : new File(batchProcessor.getWorkingDirectory(), "extracted");
+        SpriteSheet spriteSheet = batchProcessor.loadSpriteSheet();
+        List<File> files = batchProcessor.findSheetFiles(spriteSheet);
+        LOG.info("Extracting sprites of {} file(s) to {}", files.size(), outputDirectory.getAbsolutePath());
+
+        String finalFormat = format;
+        AtomicInteger count = new AtomicInteger();
+        batchProcessor.pipeline(files,
+                BmpImages::readOriginal,
+                (f, image) -> encode(image, spriteSheet.getSpriteSheets(f.getName()), new File(outputDirectory, toFileName(f.getName())), finalFormat),
+                (f, encoded) -> count.addAndGet(BmpImages.writeAll(encoded)));
+        String result = "Extracted " + count.get() + " sprite(s) from " + files.size() + " file(s)";
+        LOG.info(result);
+        return result;
+    }
+
+    private static Map<File, byte[]> encode(BufferedImage image, List<SpriteSheetRow> rows, File directory, String format) {
+        Map<File, SpriteSheetRow> targets = toTargets(rows, directory, format);
+        Map<File, byte[]> encoded = new ConcurrentHashMap<>();
+        targets.entrySet().parallelStream().forEach(e -> {
+            BufferedImage sprite = BmpImages.getSprite(image, e.getValue());
+            if (sprite == null) {
+                LOG.warn("Sprite lies outside of the image: {}", e.getValue().createId());
+                return;
+            }
+            encoded.put(e.getKey(), BmpImages.encode(sprite, format));
+        });
+        return encoded;
+    }
+
+    /**
+     * Assigns a unique target file to every sprite.
+     */
+    static Map<File, SpriteSheetRow> toTargets(List<SpriteSheetRow> rows, File directory, String format) {
+        Map<File, SpriteSheetRow> targets = new LinkedHashMap<>();
+        for (SpriteSheetRow r : rows) {
+            targets.put(toUniqueFile(directory, toFileName(r.getGroup()) + "_" + r.getNumberInGroup(), format, targets, "Sprite " + r.createId()), r);
+        }
+        return targets;
+    }
+
+    /**
+     * @param directory directory
+     * @param name file name without the extension
+     * @param extension extension
+     * @param used already assigned files
+     * @param id id of the written object used in the warning
+     * @return file name.extension in the directory or, if it is already used,
+     * the first free file name_2.extension, name_3.extension, ...
+     */
+    static File toUniqueFile(File directory, String name, String extension, Map<File, ?> used, String id) {
+        File target = new File(directory, name + "." + extension);
+        if (used.containsKey(target)) {
+            for (int i = 2; used.containsKey(target); i++) {
+                target = new File(directory, name + "_" + i + "." + extension);
+            }
+            LOG.warn("{} has the same file name as another one, it is written to {}", id, target.getName());
+        }
+        return target;
+    }
+
+    static String toFileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,129 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.commands;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.BatchProcessor;
+import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.Metrics;
+import org.nanoboot.spriteutils.core.SpriteSheet;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
+import org.nanoboot.spriteutils.image.BmpImages;
+import org.nanoboot.spriteutils.image.GifSequenceWriter;
+
+/**
+ * Creates an animated GIF for every sprite group, the frames are ordered by
+ * the number in group.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class GifsCommand implements Command {
+
+    private static final Logger LOG = LogManager.getLogger(GifsCommand.class);
+    public static final String NAME = "gifs";
+    public static final String OUTPUT = "output";
+    public static final String DELAY = "delay";
+    private static final int DEFAULT_DELAY = 100;
+
+    public GifsCommand() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
+        BatchProcessor batchProcessor = new BatchProcessor(spriteUtilsArgs);
+        int delay = spriteUtilsArgs.getIntArgument(DELAY, DEFAULT_DELAY, 0, Integer.MAX_VALUE);
+        File outputDirectory = spriteUtilsArgs.hasArgument(OUTPUT)
+                ? new File(spriteUtilsArgs.getArgument(OUTPUT)) : new File(batchProcessor.getWorkingDirectory(), "gifs");
+        SpriteSheet spriteSheet = batchProcessor.loadSpriteSheet();
+        List<File> files = batchProcessor.findSheetFiles(spriteSheet);
+        LOG.info("Creating GIFs of {} file(s) in {}", files.size(), outputDirectory.getAbsolutePath());
+
+        AtomicInteger count = new AtomicInteger();
+        batchProcessor.pipeline(files,
+                BmpImages::readOriginal,
+                (f, image) -> encode(image, spriteSheet.getSpriteSheets(f.getName()), new File(outputDirectory, ExtractCommand.toFileName(f.getName())), delay),
+                (f, encoded) -> count.addAndGet(BmpImages.writeAll(encoded)));
+        String result = "Created " + count.get() + " GIF(s) from " + files.size() + " file(s)";
+        LOG.info(result);
+        return result;
+    }
+
+    private static Map<File, byte[]> encode(BufferedImage image, List<SpriteSheetRow> rows, File directory, int delay) {
+        Map<String, List<SpriteSheetRow>> groups = new LinkedHashMap<>();
+        for (SpriteSheetRow r : rows) {
+            groups.computeIfAbsent(r.getGroup(), g -> new ArrayList<>()).add(r);
+        }
+        //Assigned before encoding in parallel, so groups with the same file name keep their order.
+        Map<File, List<SpriteSheetRow>> targets = new LinkedHashMap<>();
+        for (Map.Entry<String, List<SpriteSheetRow>> e : groups.entrySet()) {
+            targets.put(ExtractCommand.toUniqueFile(directory, ExtractCommand.toFileName(e.getKey()), "gif", targets, "Group " + e.getKey()), e.getValue());
+        }
+        Map<File, byte[]> encoded = new ConcurrentHashMap<>();
+        targets.entrySet().parallelStream().forEach(e -> {
+            File target = e.getKey();
+            List<SpriteSheetRow> frames = e.getValue();
+            frames.sort(Comparator.comparingInt(SpriteSheetRow::getNumberInGroup));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GifSequenceWriter writer = null;
+            try (Metrics.Timer timer = Metrics.start(Metrics.Stage.ENCODE)) {
+                for (SpriteSheetRow r : frames) {
+                    BufferedImage sprite = BmpImages.getSprite(image, r);
+                    if (sprite == null) {
+                        LOG.warn("Sprite lies outside of the image: {}", r.createId());
+                        continue;
+                    }
+                    //Opened with the first frame, so a group without frames creates no GIF.
+                    if (writer == null) {
+                        writer = new GifSequenceWriter(out, delay);
+                    }
+                    writer.writeFrame(sprite);
+                    timer.addPixels((long) sprite.getWidth() * sprite.getHeight());
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            if (writer == null) {
+                LOG.warn("Skipping group without sprites inside of the image: {}", frames.get(0).getGroup());
+                return;
+            }
+            encoded.put(target, out.toByteArray());
+        });
+        return encoded;
+    }
+}
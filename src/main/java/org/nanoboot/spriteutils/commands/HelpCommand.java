@@ -54,16 +54,106 @@ public class HelpCommand implements Command {
                         OPTIONS
                             color={rgb value of the rectangle border}
                                 Optional. Default=255,0,0
+                            dir={working directory containing spritesheet.csv and the BMP files}
+                                Optional. Default=(current directory).
                             files={comma separated list of BMP files in the working directory}
                                 Optional. Default=(all BMP files in the working directory).
+                            threads={number of files processed in parallel}
+                                Optional. Default=(number of available processors).
+                            cache={directory of the cache of drawn files or off}
+                                Optional. Default=(directory .spriteutils-cache in the working directory).
                             groups={comma separated list of sprite groups}
                                 Optional. Default=(all sprite groups).
                             positon={row starting with 0, height starting with 0}
                                 Optional. Default=(all sprites).
                             number-per-group={row starting with 0, height starting with 0}
                                 Optional. Default=(all sprites).
+        extract     extract every sprite to its own image
+                        OPTIONS
+                            dir={working directory containing spritesheet.csv and the BMP files}
+                                Optional. Default=(current directory).
+                            files={comma separated list of BMP files in the working directory}
+                                Optional. Default=(all BMP files in the working directory).
+                            output={directory, where the sprites are written to}
+                                Optional. Default=(directory extracted in the working directory).
+                            format={png or bmp}
+                                Optional. Default=png.
+                            threads={number of files processed in parallel}
+                                Optional. Default=(number of available processors).
+        gifs        create an animated GIF for every sprite group
+                        OPTIONS
+                            dir={working directory containing spritesheet.csv and the BMP files}
+                                Optional. Default=(current directory).
+                            files={comma separated list of BMP files in the working directory}
+                                Optional. Default=(all BMP files in the working directory).
+                            output={directory, where the GIFs are written to}
+                                Optional. Default=(directory gifs in the working directory).
+                            delay={delay between frames in milliseconds}
+                                Optional. Default=100.
+                            threads={number of files processed in parallel}
+                                Optional. Default=(number of available processors).
+        pack        repack all sprites into power-of-two atlases and write a new spritesheet.csv for them
+                        OPTIONS
+                            dir={working directory containing spritesheet.csv and the BMP files}
+                                Optional. Default=(current directory).
+                            files={comma separated list of BMP files in the working directory}
+                                Optional. Default=(all BMP files in the working directory).
+                            output={directory, where the atlases and their spritesheet.csv are written to}
+                                Optional. Default=(directory packed in the working directory).
+                            name={name of the atlases, a number and the format are appended}
+                                Optional. Default=atlas.
+                            format={bmp or png}
+                                Optional. Default=bmp.
+                            max-size={max width and height of an atlas, must be a power of two}
+                                Optional. Default=2048.
+                            padding={number of pixels between sprites}
+                                Optional. Default=1.
+                            threads={number of files processed in parallel}
+                                Optional. Default=(number of available processors).
+        dedupe      find sprites with the same pixels, similar sprites and groups of the same sprites
+                        OPTIONS
+                            dir={working directory containing spritesheet.csv and the BMP files}
+                                Optional. Default=(current directory).
+                            files={comma separated list of BMP files in the working directory}
+                                Optional. Default=(all BMP files in the working directory).
+                            similarity={max number of different bits of the perceptual hashes of similar sprites, 0-64}
+                                Optional. Default=(similar sprites are not searched).
+                            output={CSV file, where the found duplicates are written to}
+                                Optional. Default=(duplicates are only logged).
+                            threads={number of files processed in parallel}
+                                Optional. Default=(number of available processors).
+        locate      list the sprites of a file at a pixel or intersecting a region
+                        OPTIONS
+                            dir={working directory containing spritesheet.csv and the BMP files}
+                                Optional. Default=(current directory).
+                            file={name of the BMP file}
+                                Required.
+                            x={x of the pixel or of the region}
+                                Required.
+                            y={y of the pixel or of the region}
+                                Required.
+                            width={width of the region}
+                                Optional. Default=1.
+                            height={height of the region}
+                                Optional. Default=1.
+        restore     restore all images in the working directory and its subdirectories from their backups
+                        OPTIONS
+                            dir={working directory}
+                                Optional. Default=(current directory).
+                            threads={number of files restored in parallel}
+                                Optional. Default=(number of available processors).
+        serve       keep running and execute commands sent one per line, sprite sheets and images stay cached
+                        Every command is answered by one line "OK {result}" or "ERROR {message}".
+                        The command shutdown stops the server.
+                        OPTIONS
+                            socket={path of the Unix domain socket to listen on}
+                                Optional. Default=(commands are read from the standard input).
         help        Display help information
         version     Display version information                           
+
+    GLOBAL OPTIONS
+        metrics={file, where the durations, bytes, pixels and allocations of the command stages are written to}
+            Optional. The report is written as CSV, if the file name ends with .csv, otherwise as JSON.
 """;
         System.out.println(str);
         return str;
@@ -0,0 +1,86 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.commands;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.BatchProcessor;
+import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.SpriteSheet;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.nanoboot.spriteutils.core.SpriteSpatialIndex;
+import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+
+/**
+ * Finds the sprites of a file at a pixel or intersecting a region. The
+ * spatial index of the file is kept by the sprite sheet, so repeated queries
+ * sent to the serve command do not build it again.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class LocateCommand implements Command {
+
+    private static final Logger LOG = LogManager.getLogger(LocateCommand.class);
+    public static final String NAME = "locate";
+    public static final String FILE = "file";
+    public static final String X = "x";
+    public static final String Y = "y";
+    public static final String WIDTH = "width";
+    public static final String HEIGHT = "height";
+
+    public LocateCommand() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
+        BatchProcessor batchProcessor = new BatchProcessor(spriteUtilsArgs);
+        String file = getRequiredArgument(spriteUtilsArgs, FILE);
+        int x = spriteUtilsArgs.getIntArgument(X, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int y = spriteUtilsArgs.getIntArgument(Y, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int width = spriteUtilsArgs.getIntArgument(WIDTH, 1, 1, Integer.MAX_VALUE);
+        int height = spriteUtilsArgs.getIntArgument(HEIGHT, 1, 1, Integer.MAX_VALUE);
+        SpriteSheet spriteSheet = batchProcessor.loadSpriteSheet();
+        SpriteSpatialIndex spatialIndex = spriteSheet.getSpatialIndex(file);
+        if (spatialIndex == null) {
+            throw new SpriteUtilsException("File has no sprites: " + file);
+        }
+        List<SpriteSheetRow> found = spatialIndex.findIntersecting(x, y, width, height);
+        String result = "Found " + found.size() + " sprite(s)"
+                + (found.isEmpty() ? "" : ": " + found.stream().map(SpriteSheetRow::createId).collect(Collectors.joining(", ")));
+        LOG.info(result);
+        return result;
+    }
+
+    private static String getRequiredArgument(SpriteUtilsArgs spriteUtilsArgs, String name) {
+        String value = spriteUtilsArgs.getArgument(name);
+        if (value == null || value.isBlank()) {
+            throw new SpriteUtilsException("Option " + name + " is required");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,316 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.commands;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.BatchProcessor;
+import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.MaxRectsPacker;
+import org.nanoboot.spriteutils.core.SpriteSheet;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+import org.nanoboot.spriteutils.core.Utils;
+import org.nanoboot.spriteutils.image.BmpImages;
+
+/**
+ * Repacks all sprites into as few and as small power-of-two atlases as
+ * possible and writes a new spritesheet.csv describing them.
+ *
+ * In the new manifest, every sprite has its own row with explicit x and
+ * absolute height, because the packed positions cannot be expressed by the
+ * implicit layout rule. Group names used by more than one sheet are prefixed
+ * by the name of the sheet, so that the sprites stay unique.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class PackCommand implements Command {
+
+    private static final Logger LOG = LogManager.getLogger(PackCommand.class);
+    public static final String NAME = "pack";
+    public static final String OUTPUT = "output";
+    public static final String FORMAT = "format";
+    public static final String MAX_SIZE = "max-size";
+    public static final String PADDING = "padding";
+    public static final String ATLAS_NAME = "name";
+    private static final int DEFAULT_MAX_SIZE = 2048;
+    private static final int DEFAULT_PADDING = 1;
+    private static final String HEADER = "file;group;numberInGroup;row;column;x;y;width;height;notes;tags";
+
+    public PackCommand() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
+        BatchProcessor batchProcessor = new BatchProcessor(spriteUtilsArgs);
+        String format = spriteUtilsArgs.hasArgument(FORMAT) ? spriteUtilsArgs.getArgument(FORMAT).toLowerCase() : BmpImages.BMP;
+        int maxSize = spriteUtilsArgs.getIntArgument(MAX_SIZE, DEFAULT_MAX_SIZE, 1, Integer.MAX_VALUE);
+        int padding = spriteUtilsArgs.getIntArgument(PADDING, DEFAULT_PADDING, 0, Integer.MAX_VALUE);
+        String atlasName = spriteUtilsArgs.hasArgument(ATLAS_NAME) ? spriteUtilsArgs.getArgument(ATLAS_NAME) : "atlas";
+        if (Integer.bitCount(maxSize) != 1) {
+            throw new SpriteUtilsException("Max size must be a power of two: " + maxSize);
+        }
+        File outputDirectory = spriteUtilsArgs.hasArgument(OUTPUT)
+                ? new File(spriteUtilsArgs.getArgument(OUTPUT)) : new File(batchProcessor.getWorkingDirectory(), "packed");
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new SpriteUtilsException("Creating directory failed: " + outputDirectory.getAbsolutePath());
+        }
+        SpriteSheet spriteSheet = batchProcessor.loadSpriteSheet();
+        List<File> files = batchProcessor.findSheetFiles(spriteSheet);
+        LOG.info("Packing sprites of {} file(s) to {}", files.size(), outputDirectory.getAbsolutePath());
+
+        Map<File, BufferedImage> images = new ConcurrentHashMap<>();
+        batchProcessor.forEach(files, f -> images.put(f, BmpImages.readOriginal(f)));
+        List<Sprite> sprites = collectSprites(files, spriteSheet, images, maxSize);
+        sprites.sort(Comparator.<Sprite>comparingInt(s -> Math.max(s.image.getWidth(), s.image.getHeight()))
+                .thenComparingInt(s -> s.image.getWidth() * s.image.getHeight()).reversed());
+
+        List<Atlas> atlases = new ArrayList<>();
+        List<Sprite> remaining = sprites;
+        while (!remaining.isEmpty()) {
+            Atlas atlas = packAtlas(remaining, maxSize, padding);
+            atlas.file = new File(outputDirectory, atlasName + "_" + (atlases.size() + 1) + "." + format);
+            atlases.add(atlas);
+            Set<Sprite> packed = new HashSet<>(atlas.sprites);
+            remaining = remaining.stream().filter(s -> !packed.contains(s)).toList();
+        }
+
+        ColorModel colorModel = findCommonColorModel(images.values());
+        batchProcessor.forEach(atlases, a -> BmpImages.write(draw(a, colorModel), format, a.file));
+        Utils.writeTextToFile(createManifest(atlases), new File(outputDirectory, BatchProcessor.SPRITESHEET_CSV));
+
+        long originalArea = images.values().stream().mapToLong(i -> (long) i.getWidth() * i.getHeight()).sum();
+        long packedArea = atlases.stream().mapToLong(a -> (long) a.width * a.height).sum();
+        String result = "Packed " + sprites.size() + " sprite(s) from " + files.size() + " file(s) into "
+                + atlases.size() + " atlas(es), " + packedArea + " of " + originalArea + " pixels";
+        LOG.info(result);
+        return result;
+    }
+
+    private static List<Sprite> collectSprites(List<File> files, SpriteSheet spriteSheet, Map<File, BufferedImage> images, int maxSize) {
+        Map<String, Set<String>> filesOfGroup = new HashMap<>();
+        for (File f : files) {
+            for (SpriteSheetRow r : spriteSheet.getSpriteSheets(f.getName())) {
+                filesOfGroup.computeIfAbsent(r.getGroup(), g -> new HashSet<>()).add(f.getName());
+            }
+        }
+        List<Sprite> sprites = new ArrayList<>();
+        for (File f : files) {
+            BufferedImage image = images.get(f);
+            for (SpriteSheetRow r : spriteSheet.getSpriteSheets(f.getName())) {
+                BufferedImage sprite = BmpImages.getSprite(image, r);
+                if (sprite == null) {
+                    LOG.warn("Sprite lies outside of the image: {}", r.createId());
+                    continue;
+                }
+                if (sprite.getWidth() > maxSize || sprite.getHeight() > maxSize) {
+                    throw new SpriteUtilsException("Sprite is bigger than the max size " + maxSize + ": " + r.createId());
+                }
+                String group = filesOfGroup.get(r.getGroup()).size() > 1 ? f.getName() + "/" + r.getGroup() : r.getGroup();
+                sprites.add(new Sprite(r, group, sprite));
+            }
+        }
+        return sprites;
+    }
+
+    /**
+     * Packs the sprites into the smallest power-of-two atlas, all of them fit
+     * into. If they do not fit even into the atlas of the max size, this
+     * atlas is filled with as many sprites as possible.
+     */
+    private static Atlas packAtlas(List<Sprite> sprites, int maxSize, int padding) {
+        long area = 0;
+        for (Sprite s : sprites) {
+            area = area + (long) (s.image.getWidth() + padding) * (s.image.getHeight() + padding);
+        }
+        for (int[] size : findCandidateSizes(area, maxSize)) {
+            Atlas atlas = pack(sprites, size[0], size[1], padding, false);
+            if (atlas != null) {
+                return atlas;
+            }
+        }
+        return pack(sprites, maxSize, maxSize, padding, true);
+    }
+
+    /**
+     * @return power-of-two sizes with at least the given area ordered by area,
+     * the more square sizes first
+     */
+    private static List<int[]> findCandidateSizes(long area, int maxSize) {
+        List<int[]> sizes = new ArrayList<>();
+        for (int width = 1; width <= maxSize; width = width * 2) {
+            for (int height = 1; height <= maxSize; height = height * 2) {
+                if ((long) width * height >= area) {
+                    sizes.add(new int[]{width, height});
+                }
+            }
+        }
+        sizes.sort(Comparator.<int[]>comparingLong(s -> (long) s[0] * s[1])
+                .thenComparingInt(s -> Math.abs(Integer.numberOfTrailingZeros(s[0]) - Integer.numberOfTrailingZeros(s[1])))
+                .thenComparingInt(s -> -s[0]));
+        return sizes;
+    }
+
+    private static Atlas pack(List<Sprite> sprites, int width, int height, int padding, boolean partial) {
+        //The padding is added to the right and bottom side of every sprite and of the atlas too.
+        MaxRectsPacker packer = new MaxRectsPacker(width + padding, height + padding);
+        Atlas atlas = new Atlas(width, height);
+        for (Sprite s : sprites) {
+            Rectangle position = packer.insert(s.image.getWidth() + padding, s.image.getHeight() + padding);
+            if (position == null) {
+                if (!partial) {
+                    return null;
+                }
+                continue;
+            }
+            atlas.sprites.add(s);
+            atlas.positions.add(position);
+        }
+        if (atlas.sprites.isEmpty()) {
+            throw new SpriteUtilsException("No sprite could be packed into an atlas of size " + width + "x" + height);
+        }
+        LOG.debug("Atlas {}x{} with {} sprite(s), occupancy {}", width, height, atlas.sprites.size(), packer.getOccupancy());
+        return atlas;
+    }
+
+    /**
+     * @return colour model shared by all images, if they use the same palette,
+     * otherwise null
+     */
+    private static ColorModel findCommonColorModel(Iterable<BufferedImage> images) {
+        IndexColorModel common = null;
+        for (BufferedImage image : images) {
+            if (!(image.getColorModel() instanceof IndexColorModel colorModel)) {
+                return null;
+            }
+            if (common == null) {
+                common = colorModel;
+            } else if (!hasSamePalette(common, colorModel)) {
+                return null;
+            }
+        }
+        return common;
+    }
+
+    private static boolean hasSamePalette(IndexColorModel a, IndexColorModel b) {
+        if (a.getMapSize() != b.getMapSize() || a.getPixelSize() != b.getPixelSize()) {
+            return false;
+        }
+        int[] rgbA = new int[a.getMapSize()];
+        int[] rgbB = new int[b.getMapSize()];
+        a.getRGBs(rgbA);
+        b.getRGBs(rgbB);
+        return Arrays.equals(rgbA, rgbB);
+    }
+
+    private static BufferedImage draw(Atlas atlas, ColorModel colorModel) {
+        if (colorModel instanceof IndexColorModel indexColorModel) {
+            //Pixels are copied as they are, the palette stays the same.
+            BufferedImage image = new BufferedImage(atlas.width, atlas.height, BufferedImage.TYPE_BYTE_INDEXED, indexColorModel);
+            for (int i = 0; i < atlas.sprites.size(); i++) {
+                Rectangle position = atlas.positions.get(i);
+                image.getRaster().setDataElements(position.x, position.y, atlas.sprites.get(i).image.getRaster());
+            }
+            return image;
+        }
+        BufferedImage image = new BufferedImage(atlas.width, atlas.height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            for (int i = 0; i < atlas.sprites.size(); i++) {
+                Rectangle position = atlas.positions.get(i);
+                graphics.drawImage(atlas.sprites.get(i).image, position.x, position.y, null);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static String createManifest(List<Atlas> atlases) {
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        for (Atlas atlas : atlases) {
+            for (int i = 0; i < atlas.sprites.size(); i++) {
+                Sprite s = atlas.sprites.get(i);
+                Rectangle position = atlas.positions.get(i);
+                //Every sprite is in its own row, so x is explicit and the height is absolute.
+                sb.append(atlas.file.getName()).append(';')
+                        .append(s.group).append(';')
+                        .append(s.row.getNumberInGroup()).append(';')
+                        .append(i + 1).append(';')
+                        .append(1).append(';')
+                        .append(position.x).append(';')
+                        .append(position.y).append(';')
+                        .append(s.image.getWidth()).append(';')
+                        .append(s.image.getHeight()).append(';')
+                        .append(s.row.getNotes()).append(';')
+                        .append(s.row.getTags()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Sprite {
+
+        private final SpriteSheetRow row;
+        private final String group;
+        private final BufferedImage image;
+
+        Sprite(SpriteSheetRow row, String group, BufferedImage image) {
+            this.row = row;
+            this.group = group;
+            this.image = image;
+        }
+    }
+
+    private static class Atlas {
+
+        private final int width;
+        private final int height;
+        private final List<Sprite> sprites = new ArrayList<>();
+        private final List<Rectangle> positions = new ArrayList<>();
+        private File file;
+
+        Atlas(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
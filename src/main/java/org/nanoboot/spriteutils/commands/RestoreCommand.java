@@ -0,0 +1,69 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.commands;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.Backups;
+import org.nanoboot.spriteutils.core.BatchProcessor;
+import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.FileHashes;
+import org.nanoboot.spriteutils.core.FileScanner;
+import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
+
+/**
+ * Restores all files in the working directory (recursively) from their
+ * backups.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class RestoreCommand implements Command {
+
+    private static final Logger LOG = LogManager.getLogger(RestoreCommand.class);
+    public static final String NAME = "restore";
+
+    public RestoreCommand() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
+        BatchProcessor batchProcessor = new BatchProcessor(spriteUtilsArgs);
+        FileScanner scanner = new FileScanner(batchProcessor.getWorkingDirectory(), "?*" + Backups.SUFFIX);
+        FileHashes fileHashes = batchProcessor.getFileHashes();
+        AtomicInteger restored = new AtomicInteger();
+        long backupFiles = batchProcessor.forEachFile(scanner, f -> {
+            if (Backups.restore(f, fileHashes)) {
+                LOG.debug("Restored: {}", Backups.getOriginalFile(f).getAbsolutePath());
+                restored.incrementAndGet();
+            }
+        });
+        fileHashes.save();
+        String result = "Restored " + restored.get() + " file(s), " + (backupFiles - restored.get()) + " file(s) were already up to date";
+        LOG.info(result);
+        return result;
+    }
+}
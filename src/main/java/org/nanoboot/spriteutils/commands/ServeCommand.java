@@ -0,0 +1,268 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.commands;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.Command;
+import org.nanoboot.spriteutils.core.SpriteUtils;
+import org.nanoboot.spriteutils.core.SpriteUtilsArgs;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+
+/**
+ * Keeps the process running and executes commands sent over the standard
+ * input or over a Unix domain socket, so sprite sheets and decoded images
+ * stay cached between the commands.
+ *
+ * Every request is one line with the command and its options separated by
+ * spaces, as on the command line (values with spaces can be enclosed in
+ * double quotes). Every request is answered by one line "OK {result}" or
+ * "ERROR {message}", new lines in the result are escaped as \n. While
+ * serving the standard input, the standard output carries only the
+ * responses: Main sends the log messages to the standard error output and
+ * anything else printed to System.out is redirected there too. The socket is
+ * accessible by its owner only. Commands are executed one after another, even
+ * if more clients are connected. The request "shutdown" stops the server.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class ServeCommand implements Command {
+
+    private static final Logger LOG = LogManager.getLogger(ServeCommand.class);
+    public static final String NAME = "serve";
+    public static final String SOCKET = "socket";
+    public static final String SHUTDOWN = "shutdown";
+    /**
+     * System property with the target of the console log appender.
+     */
+    public static final String LOG_TARGET_PROPERTY = "spriteutils.log.target";
+    private static final String OK = "OK";
+    private static final String ERROR = "ERROR";
+
+    private final SpriteUtils spriteUtils;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private volatile boolean running;
+    private volatile ServerSocketChannel server;
+
+    public ServeCommand(SpriteUtils spriteUtils) {
+        this.spriteUtils = spriteUtils;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
+        running = true;
+        if (spriteUtilsArgs.hasArgument(SOCKET)) {
+            serveSocket(Path.of(spriteUtilsArgs.getArgument(SOCKET)));
+        } else {
+            LOG.info("Waiting for commands on the standard input");
+            PrintStream responses = System.out;
+            System.setOut(System.err);
+            try {
+                serve(new InputStreamReader(System.in, StandardCharsets.UTF_8), new OutputStreamWriter(responses, StandardCharsets.UTF_8));
+            } finally {
+                System.setOut(responses);
+            }
+        }
+        return "Server was stopped";
+    }
+
+    private void serveSocket(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            bindOwnerOnly(server, path);
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Opening socket failed: " + path + " " + ex.getMessage(), ex);
+        }
+        LOG.info("Waiting for commands on socket {}", path);
+        try {
+            while (running) {
+                SocketChannel client = server.accept();
+                Thread.ofVirtual().name("serve-client").start(() -> {
+                    try (client) {
+                        serve(Channels.newReader(client, StandardCharsets.UTF_8), Channels.newWriter(client, StandardCharsets.UTF_8));
+                    } catch (IOException ex) {
+                        LOG.warn("Closing client connection failed: {}", ex.getMessage());
+                    }
+                });
+            }
+        } catch (AsynchronousCloseException ex) {
+            //The server was stopped by the shutdown request.
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Accepting connection failed: " + path + " " + ex.getMessage(), ex);
+        } finally {
+            try {
+                server.close();
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                LOG.warn("Closing socket failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Binds the socket in a new directory accessible by the owner only, makes
+     * the socket accessible by the owner only and moves it to the path, so
+     * other users can never connect to it.
+     */
+    private static void bindOwnerOnly(ServerSocketChannel server, Path path) throws IOException {
+        Path absolutePath = path.toAbsolutePath();
+        if (!absolutePath.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            server.bind(UnixDomainSocketAddress.of(absolutePath));
+            return;
+        }
+        Path directory = Files.createTempDirectory(absolutePath.getParent(), ".s",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        Path temp = directory.resolve("s");
+        try {
+            server.bind(UnixDomainSocketAddress.of(temp));
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            Files.move(temp, absolutePath, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Answers the requests read from the reader, until the reader is closed
+     * or the server is stopped.
+     */
+    private void serve(Reader reader, Writer writer) {
+        BufferedReader in = new BufferedReader(reader);
+        BufferedWriter out = new BufferedWriter(writer);
+        try {
+            String line;
+            while (running && (line = in.readLine()) != null) {
+                String response = handle(line);
+                if (response == null) {
+                    continue;
+                }
+                out.write(response);
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException ex) {
+            LOG.warn("Connection failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * @param line request
+     * @return response or null for an empty request
+     */
+    String handle(String line) {
+        String[] args = split(line);
+        if (args.length == 0) {
+            return null;
+        }
+        if (args[0].equals(NAME)) {
+            return ERROR + " Command " + NAME + " cannot be nested";
+        }
+        if (args[0].equals(SHUTDOWN)) {
+            stop();
+            return OK;
+        }
+        lock.lock();
+        try {
+            String result = spriteUtils.run(args);
+            return result == null || result.isEmpty() ? OK : OK + " " + escape(result);
+        } catch (RuntimeException ex) {
+            LOG.error("Command failed: " + line, ex);
+            return ERROR + " " + escape(String.valueOf(ex.getMessage()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stop() {
+        running = false;
+        ServerSocketChannel s = server;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ex) {
+                LOG.warn("Closing socket failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Splits the line by white spaces, white spaces enclosed in double quotes
+     * are kept.
+     */
+    static String[] split(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        boolean inArg = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') {
+                quoted = !quoted;
+                inArg = true;
+            } else if (Character.isWhitespace(ch) && !quoted) {
+                if (inArg) {
+                    args.add(sb.toString());
+                    sb.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                sb.append(ch);
+                inArg = true;
+            }
+        }
+        if (inArg) {
+            args.add(sb.toString());
+        }
+        return args.toArray(String[]::new);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n");
+    }
+}
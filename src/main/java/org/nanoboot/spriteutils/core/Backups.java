@@ -0,0 +1,83 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+
+/**
+ * Backups of the original images ({file}.backup), which are created before an
+ * image is changed for the first time.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class Backups {
+
+    public static final String SUFFIX = ".backup";
+
+    private Backups() {
+        //Not meant to be instantiated.
+    }
+
+    public static File getBackupFile(File file) {
+        return new File(file.getAbsolutePath() + SUFFIX);
+    }
+
+    public static boolean isBackupFile(File file) {
+        return file.getName().endsWith(SUFFIX) && file.getName().length() > SUFFIX.length();
+    }
+
+    public static File getOriginalFile(File backupFile) {
+        String path = backupFile.getAbsolutePath();
+        return new File(path.substring(0, path.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Creates the backup of the file, if it does not exist yet.
+     *
+     * @param file file
+     * @return backup file, which has the original content of the file
+     */
+    public static File backup(File file) {
+        File backupFile = getBackupFile(file);
+        if (!backupFile.exists()) {
+            Utils.transferFile(file, backupFile);
+        }
+        return backupFile;
+    }
+
+    /**
+     * Copies the backup over the original file, unless both already have the
+     * same content.
+     *
+     * @param backupFile backup file
+     * @param fileHashes hashes used to compare the files
+     * @return true, if the file was copied, false, if it was already up to
+     * date
+     */
+    public static boolean restore(File backupFile, FileHashes fileHashes) {
+        File file = getOriginalFile(backupFile);
+        if (file.exists() && file.length() == backupFile.length()
+                && fileHashes.getHash(file).equals(fileHashes.getHash(backupFile))) {
+            return false;
+        }
+        Utils.transferFile(backupFile, file);
+        return true;
+    }
+}
@@ -0,0 +1,239 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Resolves the working directory and the sprite sheet files a command should
+ * process and runs the per file work on a bounded pool of worker threads.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class BatchProcessor {
+
+    private static final Logger LOG = LogManager.getLogger(BatchProcessor.class);
+    public static final String SPRITESHEET_CSV = "spritesheet.csv";
+    public static final String DIR = "dir";
+    public static final String FILES = "files";
+    public static final String THREADS = "threads";
+    private static final int IO_THREADS_PER_THREAD = 2;
+    private static final String[] IMAGE_GLOBS = {"*.bmp", "*.blp"};
+
+    @Getter
+    private final File workingDirectory;
+    @Getter
+    private final int threads;
+    private final Set<String> requestedFiles;
+
+    public BatchProcessor(SpriteUtilsArgs spriteUtilsArgs) {
+        String dir = spriteUtilsArgs.getArgument(DIR);
+        workingDirectory = new File(dir == null || dir.isBlank() ? System.getProperty("user.dir") : dir);
+        if (!workingDirectory.isDirectory()) {
+            throw new SpriteUtilsException("Working directory does not exist: " + workingDirectory.getAbsolutePath());
+        }
+        threads = spriteUtilsArgs.getIntArgument(THREADS, Runtime.getRuntime().availableProcessors(), 1, Integer.MAX_VALUE);
+        String files = spriteUtilsArgs.getArgument(FILES);
+        requestedFiles = files == null || files.isBlank() ? null : new HashSet<>(Arrays.asList(files.split(",")));
+    }
+
+    public SpriteSheet loadSpriteSheet() {
+        File csv = new File(workingDirectory, SPRITESHEET_CSV);
+        if (!csv.exists()) {
+            throw new SpriteUtilsException("Sprite sheet description was not found: " + csv.getAbsolutePath());
+        }
+        return SpriteSheetCache.getInstance().get(csv);
+    }
+
+    /**
+     * @return hashes with the index in the working directory
+     */
+    public FileHashes getFileHashes() {
+        return FileHashes.forDirectory(workingDirectory);
+    }
+
+    /**
+     * Lists the BMP and BLP files of the working directory, which are described
+     * by the given sprite sheet and selected by the option files (if set).
+     *
+     * @param spriteSheet sprite sheet
+     * @return files to process, sorted by name
+     */
+    public List<File> findSheetFiles(SpriteSheet spriteSheet) {
+        List<File> result = new ArrayList<>();
+        for (File f : new FileScanner(workingDirectory, 1, IMAGE_GLOBS).list()) {
+            if (requestedFiles != null && !requestedFiles.contains(f.getName())) {
+                continue;
+            }
+            if (spriteSheet.getSpriteSheets(f.getName()) == null) {
+                LOG.debug("Skipping file without sprites: {}", f.getName());
+                continue;
+            }
+            result.add(f);
+        }
+        if (requestedFiles != null) {
+            for (String requested : requestedFiles) {
+                if (result.stream().noneMatch(f -> f.getName().equals(requested))) {
+                    LOG.warn("Requested file was not found or has no sprites: {}", requested);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the action for every file found by the scanner on a pool of at most
+     * {@link #getThreads()} threads. The processing starts with the first found
+     * file, while the scanning continues.
+     *
+     * @param scanner scanner
+     * @param action action
+     * @return number of found files
+     * @throws SpriteUtilsException if the scanning or the action failed for any
+     * file
+     */
+    public long forEachFile(FileScanner scanner, Consumer<File> action) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore pending = new Semaphore(threads * IO_THREADS_PER_THREAD);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long count;
+        try {
+            count = scanner.scan(f -> {
+                if (failure.get() != null) {
+                    throw new SpriteUtilsException("Scanning was stopped");
+                }
+                try {
+                    pending.acquire();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SpriteUtilsException("Processing was interrupted", ex);
+                }
+                executor.execute(() -> {
+                    try {
+                        action.accept(f);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        pending.release();
+                    }
+                });
+            });
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SpriteUtilsException("Processing was interrupted", ex);
+        } catch (SpriteUtilsException ex) {
+            if (failure.get() == null) {
+                throw ex;
+            }
+            count = -1;
+        } finally {
+            executor.shutdownNow();
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof SpriteUtilsException) {
+            throw (SpriteUtilsException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw new SpriteUtilsException("Processing failed: " + cause.getMessage(), (Exception) cause);
+        }
+        return count;
+    }
+
+    /**
+     * Runs the action for every item on a pool of at most {@link #getThreads()}
+     * threads and waits until all items are processed.
+     *
+     * @param <T> item type
+     * @param items items
+     * @param action action
+     * @throws SpriteUtilsException if the action failed for any item
+     */
+    public <T> void forEach(List<T> items, Consumer<T> action) {
+        if (items.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, items.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(items.size());
+            for (T item : items) {
+                futures.add(executor.submit(() -> action.accept(item)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    futures.forEach(f -> f.cancel(true));
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof SpriteUtilsException) {
+                        throw (SpriteUtilsException) cause;
+                    }
+                    throw new SpriteUtilsException("Processing failed: " + cause.getMessage(), ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SpriteUtilsException("Processing was interrupted", ex);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the items through a {@link Pipeline}: the load and store stages run
+     * on virtual threads, at most {@link #getThreads()} items are transformed
+     * at the same time.
+     *
+     * @param <T> item type
+     * @param <S> type of loaded items
+     * @param <R> type of transformed items
+     * @param items items
+     * @param load I/O stage, for example reading of the image
+     * @param transform CPU stage, for example drawing or encoding
+     * @param store I/O stage, for example writing of the result
+     * @throws SpriteUtilsException if any stage failed for any item
+     */
+    public <T, S, R> void pipeline(List<T> items, Function<T, S> load, BiFunction<T, S, R> transform, BiConsumer<T, R> store) {
+        new Pipeline(threads, threads * IO_THREADS_PER_THREAD, threads).run(items, load, transform, store);
+    }
+}
@@ -0,0 +1,330 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Resolved sprite sheet in a binary form (spritesheet.csv.compiled), which is
+ * memory-mapped instead of being parsed and resolved again. spritesheet.csv
+ * stays the source, the compiled file is used only while the size and the
+ * modification time of spritesheet.csv are the same as when it was compiled.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header      magic, version, csv length (long), csv modification time (long),
+ *             row count, file count, string count
+ * file index  per file: name string id, first record, record count
+ * records     per row: file, group, number in group, row, column, x, y,
+ *             width, height, number per sheet, notes, tags (ints, strings
+ *             are string ids, -1 is null), the rows of a file are adjacent
+ * strings     string count + 1 offsets, then the UTF-8 bytes of all strings
+ * </pre>
+ * The lookup of a file builds only a map of the file names, the records and
+ * strings are read from the mapped file on demand.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+class CompiledManifest {
+
+    private static final Logger LOG = LogManager.getLogger(CompiledManifest.class);
+    static final String SUFFIX = ".compiled";
+    private static final int MAGIC = 0x53505254;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int FILE_ENTRY_SIZE = 12;
+    private static final int RECORD_SIZE = 48;
+    private static final int NULL_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final int recordsOffset;
+    private final int stringOffsetsOffset;
+    private final int stringsOffset;
+    private final String[] strings;
+    private final Map<String, Integer> fileEntriesByName;
+
+    private CompiledManifest(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.rowCount = buffer.getInt(24);
+        int fileCount = buffer.getInt(28);
+        int stringCount = buffer.getInt(32);
+        this.recordsOffset = HEADER_SIZE + fileCount * FILE_ENTRY_SIZE;
+        this.stringOffsetsOffset = recordsOffset + rowCount * RECORD_SIZE;
+        this.stringsOffset = stringOffsetsOffset + (stringCount + 1) * 4;
+        this.strings = new String[stringCount];
+        this.fileEntriesByName = new HashMap<>(fileCount * 2);
+        for (int f = 0; f < fileCount; f++) {
+            fileEntriesByName.put(getString(buffer.getInt(HEADER_SIZE + f * FILE_ENTRY_SIZE)), HEADER_SIZE + f * FILE_ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * Maps the compiled file.
+     *
+     * @param compiled compiled file
+     * @param csv spritesheet.csv
+     * @return compiled manifest or null, if it does not exist, is invalid or
+     * is older than the csv
+     */
+    static CompiledManifest open(File compiled, File csv) {
+        if (!compiled.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != csv.length() || buffer.getLong(16) != csv.lastModified()) {
+                LOG.debug("Compiled manifest is out of date: {}", compiled.getAbsolutePath());
+                return null;
+            }
+            long stringOffsets = HEADER_SIZE + (long) buffer.getInt(28) * FILE_ENTRY_SIZE + (long) buffer.getInt(24) * RECORD_SIZE;
+            long stringCount = buffer.getInt(32);
+            long stringsOffset = stringOffsets + (stringCount + 1) * 4;
+            if (stringsOffset > size || stringsOffset + buffer.getInt((int) (stringOffsets + stringCount * 4)) != size) {
+                LOG.warn("Compiled manifest is damaged and is ignored: {}", compiled.getAbsolutePath());
+                return null;
+            }
+            return new CompiledManifest(buffer);
+        } catch (IOException ex) {
+            LOG.warn("Compiled manifest is ignored, because reading it failed: {} {}", compiled.getAbsolutePath(), ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the resolved rows, unless the csv was modified less than
+     * {@link FileHashes#RACY_MILLIS} ago, because then its size and
+     * modification time would not detect a later change.
+     *
+     * @param compiled compiled file
+     * @param csv spritesheet.csv, the source of the rows
+     * @param index resolved rows
+     */
+    static void write(File compiled, File csv, SpriteIndex index) {
+        long csvLastModified = csv.lastModified();
+        if (csvLastModified >= System.currentTimeMillis() - FileHashes.RACY_MILLIS) {
+            LOG.debug("Manifest was modified just now, it is not compiled: {}", csv.getAbsolutePath());
+            compiled.delete();
+            return;
+        }
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        List<String> files = index.getFiles();
+        for (String file : files) {
+            stringId(stringIds, file);
+        }
+        for (int i = 0; i < index.size(); i++) {
+            stringId(stringIds, index.getGroup(i));
+            stringId(stringIds, index.getNotes(i));
+            stringId(stringIds, index.getTags(i));
+        }
+        try {
+            Utils.writeAtomically(compiled, temp -> writeContent(temp, csv.length(), csvLastModified, index, files, stringIds));
+            LOG.debug("Compiled manifest was written: {}", compiled.getAbsolutePath());
+        } catch (IOException ex) {
+            LOG.warn("Compiled manifest was not written: {} {}", compiled.getAbsolutePath(), ex.getMessage());
+        }
+    }
+
+    private static void writeContent(File target, long csvLength, long csvLastModified, SpriteIndex index, List<String> files,
+            Map<String, Integer> stringIds) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target.toPath()), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(csvLength);
+            out.writeLong(csvLastModified);
+            out.writeInt(index.size());
+            out.writeInt(files.size());
+            out.writeInt(stringIds.size());
+            int first = 0;
+            List<int[]> rowIndexes = new ArrayList<>(files.size());
+            for (String file : files) {
+                int[] indexes = index.getRowIndexes(file);
+                rowIndexes.add(indexes);
+                out.writeInt(stringIds.get(file));
+                out.writeInt(first);
+                out.writeInt(indexes.length);
+                first = first + indexes.length;
+            }
+            for (int[] indexes : rowIndexes) {
+                for (int i : indexes) {
+                    out.writeInt(stringIds.get(index.getFile(i)));
+                    out.writeInt(stringId(stringIds, index.getGroup(i)));
+                    out.writeInt(index.getNumberInGroup(i));
+                    out.writeInt(index.getRow(i));
+                    out.writeInt(index.getColumn(i));
+                    out.writeInt(index.getX(i));
+                    out.writeInt(index.getY(i));
+                    out.writeInt(index.getWidth(i));
+                    out.writeInt(index.getHeight(i));
+                    out.writeInt(index.getNumberPerSheet(i));
+                    out.writeInt(stringId(stringIds, index.getNotes(i)));
+                    out.writeInt(stringId(stringIds, index.getTags(i)));
+                }
+            }
+            List<byte[]> bytes = new ArrayList<>(stringIds.size());
+            int offset = 0;
+            for (String s : stringIds.keySet()) {
+                out.writeInt(offset);
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                bytes.add(b);
+                offset = offset + b.length;
+            }
+            out.writeInt(offset);
+            for (byte[] b : bytes) {
+                out.write(b);
+            }
+        }
+    }
+
+    private static int stringId(Map<String, Integer> stringIds, String s) {
+        if (s == null) {
+            return NULL_STRING;
+        }
+        Integer id = stringIds.get(s);
+        if (id == null) {
+            id = stringIds.size();
+            stringIds.put(s, id);
+        }
+        return id;
+    }
+
+    int size() {
+        return rowCount;
+    }
+
+    /**
+     * @param file file name
+     * @return rows of the file or null, if there is no such file
+     */
+    List<SpriteSheetRow> getRows(String file) {
+        Integer entry = fileEntriesByName.get(file);
+        return entry == null ? null : new RowList(buffer.getInt(entry + 4), buffer.getInt(entry + 8));
+    }
+
+    /**
+     * @param file file name
+     * @param group group
+     * @param numberInGroup number in group
+     * @return row or null, if there is no such row
+     */
+    SpriteSheetRow find(String file, String group, int numberInGroup) {
+        Integer entry = fileEntriesByName.get(file);
+        if (entry == null) {
+            return null;
+        }
+        int first = buffer.getInt(entry + 4);
+        int end = first + buffer.getInt(entry + 8);
+        for (int r = first; r < end; r++) {
+            int record = recordsOffset + r * RECORD_SIZE;
+            if (buffer.getInt(record + 8) == numberInGroup && group.equals(getString(buffer.getInt(record + 4)))) {
+                return toSpriteSheetRow(r);
+            }
+        }
+        return null;
+    }
+
+    private SpriteSheetRow toSpriteSheetRow(int r) {
+        int record = recordsOffset + r * RECORD_SIZE;
+        SpriteSheetRow row = new SpriteSheetRow();
+        row.file = getString(buffer.getInt(record));
+        row.group = getString(buffer.getInt(record + 4));
+        row.numberInGroup = buffer.getInt(record + 8);
+        row.row = buffer.getInt(record + 12);
+        row.column = buffer.getInt(record + 16);
+        row.x = buffer.getInt(record + 20);
+        row.y = buffer.getInt(record + 24);
+        row.width = buffer.getInt(record + 28);
+        row.height = buffer.getInt(record + 32);
+        row.numberPerSheet = buffer.getInt(record + 36);
+        row.notes = getString(buffer.getInt(record + 40));
+        row.tags = getString(buffer.getInt(record + 44));
+        return row;
+    }
+
+    /**
+     * Decodes the string once, the same string object is returned by the next
+     * calls.
+     */
+    private String getString(int id) {
+        if (id == NULL_STRING) {
+            return null;
+        }
+        String s = strings[id];
+        if (s == null) {
+            int from = buffer.getInt(stringOffsetsOffset + id * 4);
+            int to = buffer.getInt(stringOffsetsOffset + id * 4 + 4);
+            byte[] bytes = new byte[to - from];
+            buffer.get(stringsOffset + from, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    /**
+     * Read-only view of the adjacent rows of one file. Every call of get
+     * creates a new row object.
+     */
+    private class RowList extends AbstractList<SpriteSheetRow> implements RandomAccess {
+
+        private final int first;
+        private final int count;
+
+        RowList(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        public SpriteSheetRow get(int i) {
+            if (i < 0 || i >= count) {
+                throw new IndexOutOfBoundsException("Index " + i + " is out of bounds for size " + count);
+            }
+            return toSpriteSheetRow(first + i);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes spritesheet.csv.computed.csv incrementally.
+ *
+ * Next to the computed file, a list of blocks (the header and the rows of one
+ * file each) is kept with the SHA-256 fingerprint of the source rows and the
+ * position of the block in the computed file. Only blocks with a new
+ * fingerprint are serialized again, the other ones are copied from the
+ * previous computed file. If no fingerprint changed, nothing is written.
+ * The list starts with the {@link #VERSION} of the row serialization, blocks
+ * written by another version are never copied.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+class ComputedSpriteSheetWriter {
+
+    private static final Logger LOG = LogManager.getLogger(ComputedSpriteSheetWriter.class);
+    static final String BLOCKS_SUFFIX = ".blocks";
+    /**
+     * Must be increased, whenever the serialization of the header or of the
+     * rows is changed.
+     */
+    static final int VERSION = 1;
+    private static final String VERSION_LINE = "version;" + VERSION;
+
+    private final File computed;
+    private final File blocksFile;
+
+    ComputedSpriteSheetWriter(File computed) {
+        this.computed = computed;
+        this.blocksFile = new File(computed.getAbsolutePath() + BLOCKS_SUFFIX);
+    }
+
+    /**
+     * @param header header line
+     * @param index resolved rows
+     * @param blocks from (inclusive) and to (exclusive) row index of every
+     * block
+     * @param fingerprints fingerprint of the header followed by the
+     * fingerprints of the blocks
+     * @return number of bytes written to the computed file, 0 if it was up to
+     * date
+     */
+    long write(String header, SpriteIndex index, List<int[]> blocks, List<String> fingerprints) {
+        List<Block> oldBlocks = readBlocks();
+        if (oldBlocks.size() == fingerprints.size()) {
+            boolean changed = false;
+            for (int i = 0; i < fingerprints.size(); i++) {
+                if (!oldBlocks.get(i).fingerprint.equals(fingerprints.get(i))) {
+                    changed = true;
+                    break;
+                }
+            }
+            if (!changed) {
+                LOG.debug("Computed file is up to date: {}", computed.getAbsolutePath());
+                return 0;
+            }
+        }
+        Map<String, Block> reusable = new HashMap<>();
+        oldBlocks.forEach(b -> reusable.put(b.fingerprint, b));
+
+        List<Block> newBlocks = new ArrayList<>(fingerprints.size());
+        int[] reused = new int[1];
+        try {
+            Utils.writeAtomically(computed, temp -> reused[0] = writeComputed(temp, header, index, blocks, fingerprints, reusable, newBlocks));
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing to file failed: " + computed.getAbsolutePath(), ex);
+        }
+        writeBlocks(newBlocks);
+        LOG.debug("Computed file was written, {} of {} blocks reused: {}", reused[0], newBlocks.size(), computed.getAbsolutePath());
+        return computed.length();
+    }
+
+    /**
+     * @return number of reused blocks
+     */
+    private int writeComputed(File target, String header, SpriteIndex index, List<int[]> blocks, List<String> fingerprints,
+            Map<String, Block> reusable, List<Block> newBlocks) throws IOException {
+        int reused = 0;
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE); FileChannel in = reusable.isEmpty() ? null : FileChannel.open(computed.toPath(), StandardOpenOption.READ)) {
+            SpriteSheetCsvWriter writer = new SpriteSheetCsvWriter(out);
+            for (int b = 0; b < fingerprints.size(); b++) {
+                String fingerprint = fingerprints.get(b);
+                long offset = out.position();
+                Block old = reusable.get(fingerprint);
+                if (old != null) {
+                    transfer(in, old.offset, old.length, out);
+                    reused++;
+                } else if (b == 0) {
+                    writer.writeLine(header);
+                    writer.flush();
+                } else {
+                    int[] block = blocks.get(b - 1);
+                    boolean trace = LOG.isTraceEnabled();
+                    for (int i = block[0]; i < block[1]; i++) {
+                        if (trace) {
+                            LOG.trace("Computed row: {}", index.toSpriteSheetRow(i).toCsvLine());
+                        }
+                        writer.writeRow(index, i);
+                    }
+                    writer.flush();
+                }
+                newBlocks.add(new Block(fingerprint, offset, out.position() - offset));
+            }
+        }
+        return reused;
+    }
+
+    private List<Block> readBlocks() {
+        List<Block> result = new ArrayList<>();
+        if (!computed.exists() || !blocksFile.exists()) {
+            return result;
+        }
+        String[] lines = Utils.readTextFromFile(blocksFile).split("\n");
+        if (!lines[0].equals(VERSION_LINE)) {
+            LOG.debug("Computed file was written by another version, it will be written again: {}", computed.getAbsolutePath());
+            return result;
+        }
+        long end = 0;
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] columns = line.split(";");
+            if (columns.length != 3) {
+                LOG.warn("Ignoring corrupted file: {}", blocksFile.getAbsolutePath());
+                return new ArrayList<>();
+            }
+            Block block = new Block(columns[0], Long.parseLong(columns[1]), Long.parseLong(columns[2]));
+            result.add(block);
+            end = Math.max(end, block.offset + block.length);
+        }
+        if (end != computed.length()) {
+            LOG.warn("Computed file was changed outside of sprite-utils, it will be written again: {}", computed.getAbsolutePath());
+            return new ArrayList<>();
+        }
+        return result;
+    }
+
+    private void writeBlocks(List<Block> blocks) {
+        StringBuilder sb = new StringBuilder(VERSION_LINE).append('\n');
+        for (Block b : blocks) {
+            sb.append(b.fingerprint).append(';').append(b.offset).append(';').append(b.length).append('\n');
+        }
+        try {
+            Utils.writeAtomically(blocksFile, temp -> Files.writeString(temp.toPath(), sb));
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing to file failed: " + blocksFile.getAbsolutePath(), ex);
+        }
+    }
+
+    private static void transfer(FileChannel in, long offset, long length, FileChannel out) throws IOException {
+        long done = 0;
+        while (done < length) {
+            long transferred = in.transferTo(offset + done, length - done, out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            done = done + transferred;
+        }
+    }
+
+    private static class Block {
+
+        private final String fingerprint;
+        private final long offset;
+        private final long length;
+
+        Block(String fingerprint, long offset, long length) {
+            this.fingerprint = fingerprint;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
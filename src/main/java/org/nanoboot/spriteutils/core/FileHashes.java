@@ -0,0 +1,159 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * SHA-256 hashes of files, which are remembered in an index keyed by the path,
+ * the modification time and the size of the file, so an unchanged file is
+ * hashed only once.
+ *
+ * The index of a working directory is stored in {@link #INDEX_FILE} by
+ * {@link #save()} and shared by all commands of the process, it is only an
+ * optimization, so failures to read or write it are logged as warnings. Hashes of files
+ * modified less than {@link #RACY_MILLIS} before hashing are not
+ * remembered. The methods may be called from several threads at the same
+ * time.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class FileHashes {
+
+    private static final Logger LOG = LogManager.getLogger(FileHashes.class);
+    public static final String INDEX_FILE = ".spriteutils-hashes.csv";
+    /**
+     * Size and modification time of a file modified less than this time ago
+     * do not prove that the file is unchanged.
+     */
+    static final long RACY_MILLIS = 2000;
+    private static final Map<File, FileHashes> INSTANCES = new ConcurrentHashMap<>();
+
+    private final File indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean changed;
+
+    private FileHashes(File indexFile) {
+        this.indexFile = indexFile;
+        load();
+    }
+
+    /**
+     * @param directory working directory
+     * @return hashes with the index in the directory
+     */
+    public static FileHashes forDirectory(File directory) {
+        return INSTANCES.computeIfAbsent(new File(directory.getAbsoluteFile(), INDEX_FILE), FileHashes::new);
+    }
+
+    /**
+     * @param file file
+     * @return SHA-256 hash of the content of the file, taken from the index,
+     * if the file did not change
+     */
+    public String getHash(File file) {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Entry entry = entries.get(path);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            return entry.hash;
+        }
+        long start = System.currentTimeMillis();
+        String hash = Utils.calculateSHA256Hash(file);
+        if (lastModified < start - RACY_MILLIS && file.lastModified() == lastModified && file.length() == length) {
+            entries.put(path, new Entry(lastModified, length, hash));
+            changed = true;
+        } else {
+            entries.remove(path);
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the index, if it was changed. Entries of deleted files are
+     * removed.
+     */
+    public synchronized void save() {
+        if (!changed) {
+            return;
+        }
+        changed = false;
+        entries.keySet().removeIf(path -> !new File(path).isFile());
+        try {
+            Utils.writeAtomically(indexFile, temp -> {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                        Entry entry = e.getValue();
+                        writer.write(entry.hash + ";" + entry.length + ";" + entry.lastModified + ";" + e.getKey());
+                        writer.write('\n');
+                    }
+                }
+            });
+        } catch (IOException ex) {
+            LOG.warn("Hash index was not saved: {} {}", indexFile.getAbsolutePath(), ex.getMessage());
+            return;
+        }
+        LOG.debug("Saved {} hash(es) to {}", entries.size(), indexFile.getAbsolutePath());
+    }
+
+    private void load() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(";", 4);
+                if (parts.length != 4) {
+                    LOG.warn("Skipping invalid line of {}: {}", indexFile.getName(), line);
+                    continue;
+                }
+                entries.put(parts[3], new Entry(Long.parseLong(parts[2]), Long.parseLong(parts[1]), parts[0]));
+            }
+        } catch (IOException | NumberFormatException ex) {
+            LOG.warn("Hash index is ignored, because reading it failed: {} {}", indexFile.getAbsolutePath(), ex.getMessage());
+            entries.clear();
+        }
+        LOG.debug("Loaded {} hash(es) from {}", entries.size(), indexFile.getAbsolutePath());
+    }
+
+    private static class Entry {
+
+        private final long lastModified;
+        private final long length;
+        private final String hash;
+
+        Entry(long lastModified, long length, String hash) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Walks a directory tree and passes every regular file, whose name matches one
+ * of the glob patterns (for example *.bmp), to the consumer as soon as it is
+ * found, so the processing can start before the whole tree is walked.
+ *
+ * The patterns are matched against the file name only and are case
+ * insensitive. Directories, which cannot be read, are skipped with a warning.
+ * Symbolic links are followed, so linked files and directories are scanned
+ * too; a link back to one of its parent directories is skipped with a warning.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class FileScanner {
+
+    private static final Logger LOG = LogManager.getLogger(FileScanner.class);
+
+    private final Path root;
+    private final int maxDepth;
+    private final List<PathMatcher> matchers;
+
+    /**
+     * @param root directory to walk recursively
+     * @param globs file name patterns, all files match, if there is none
+     */
+    public FileScanner(File root, String... globs) {
+        this(root, Integer.MAX_VALUE, globs);
+    }
+
+    /**
+     * @param root directory to walk
+     * @param maxDepth max depth of the files, 1 for the files of the root
+     * directory only
+     * @param globs file name patterns, all files match, if there is none
+     */
+    public FileScanner(File root, int maxDepth, String... globs) {
+        this.root = root.toPath();
+        this.maxDepth = maxDepth;
+        FileSystem fileSystem = this.root.getFileSystem();
+        List<PathMatcher> list = new ArrayList<>(globs.length);
+        for (String glob : globs) {
+            list.add(fileSystem.getPathMatcher("glob:" + glob.toLowerCase(Locale.ROOT)));
+        }
+        this.matchers = list;
+    }
+
+    /**
+     * Walks the tree on the current thread.
+     *
+     * @param consumer called for every matching file in the order of walking,
+     * an exception thrown by it stops the walking and is rethrown
+     * @return number of matching files
+     * @throws SpriteUtilsException if the root directory cannot be walked
+     */
+    public long scan(Consumer<File> consumer) {
+        long[] count = new long[1];
+        try {
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && matches(file.getFileName())) {
+                        count[0]++;
+                        consumer.accept(file.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    if (file.equals(root)) {
+                        throw new SpriteUtilsException("Scanning directory failed: " + root + " " + exc.getMessage());
+                    }
+                    LOG.warn("Skipping unreadable path: {} {}", file, exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    if (exc != null) {
+                        LOG.warn("Directory was not scanned completely: {} {}", dir, exc.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Scanning directory failed: " + root + " " + ex.getMessage());
+        }
+        return count[0];
+    }
+
+    /**
+     * Collects the matching files.
+     *
+     * @return matching files sorted by path
+     */
+    public List<File> list() {
+        List<File> files = new ArrayList<>();
+        scan(files::add);
+        Collections.sort(files);
+        return files;
+    }
+
+    private boolean matches(Path fileName) {
+        if (matchers.isEmpty()) {
+            return true;
+        }
+        String name = fileName.toString();
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        Path path = name.equals(lowerCase) ? fileName : fileName.getFileSystem().getPath(lowerCase);
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -18,6 +18,8 @@
 ///////////////////////////////////////////////////////////////////////////////////////////////
 package org.nanoboot.spriteutils.core;
 
+import org.nanoboot.spriteutils.commands.ServeCommand;
+
 /**
  * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
  * @since 0.0.0
@@ -25,10 +27,17 @@ package org.nanoboot.spriteutils.core;
 public class Main {
 
     public static void main(String[] args) {
-        System.out.println("Sprite Utils - tool used to work with sprites\n");
+        boolean serving = args.length > 0 && args[0].equals(ServeCommand.NAME);
+        if (serving) {
+            //Must be set before the first logger is created.
+            System.setProperty(ServeCommand.LOG_TARGET_PROPERTY, "SYSTEM_ERR");
+        }
+        (serving ? System.err : System.out).println("Sprite Utils - tool used to work with sprites\n");
      
         SpriteUtils spriteUtils = new SpriteUtils();
-        args = new String[]{"draw"};
+        if (args.length == 0) {
+            args = new String[]{"draw"};
+        }
         spriteUtils.run(args);
     }
 
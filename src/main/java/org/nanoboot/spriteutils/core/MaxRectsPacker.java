@@ -0,0 +1,151 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs rectangles into a bin of fixed size using the MaxRects algorithm with
+ * the best short side fit heuristic.
+ *
+ * All maximal free rectangles of the bin are kept. A new rectangle is placed
+ * into the free rectangle, where the shorter leftover side is the smallest.
+ * Rectangles are never rotated. Instances are not thread-safe.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class MaxRectsPacker {
+
+    private final int width;
+    private final int height;
+    private final List<Rectangle> freeRectangles = new ArrayList<>();
+    private long usedArea;
+
+    public MaxRectsPacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        freeRectangles.add(new Rectangle(0, 0, width, height));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return occupied part of the bin, from 0 to 1
+     */
+    public double getOccupancy() {
+        return (double) usedArea / ((long) width * height);
+    }
+
+    /**
+     * Places the rectangle into the bin.
+     *
+     * @param rectangleWidth width
+     * @param rectangleHeight height
+     * @return placed rectangle or null, if there is no space for it
+     */
+    public Rectangle insert(int rectangleWidth, int rectangleHeight) {
+        Rectangle best = null;
+        int bestShortSide = Integer.MAX_VALUE;
+        int bestLongSide = Integer.MAX_VALUE;
+        for (Rectangle free : freeRectangles) {
+            if (free.width < rectangleWidth || free.height < rectangleHeight) {
+                continue;
+            }
+            int leftoverX = free.width - rectangleWidth;
+            int leftoverY = free.height - rectangleHeight;
+            int shortSide = Math.min(leftoverX, leftoverY);
+            int longSide = Math.max(leftoverX, leftoverY);
+            if (shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide)) {
+                best = new Rectangle(free.x, free.y, rectangleWidth, rectangleHeight);
+                bestShortSide = shortSide;
+                bestLongSide = longSide;
+            }
+        }
+        if (best != null) {
+            place(best);
+        }
+        return best;
+    }
+
+    private void place(Rectangle used) {
+        List<Rectangle> newFreeRectangles = new ArrayList<>();
+        for (int i = freeRectangles.size() - 1; i >= 0; i--) {
+            Rectangle free = freeRectangles.get(i);
+            if (!free.intersects(used)) {
+                continue;
+            }
+            freeRectangles.remove(i);
+            split(free, used, newFreeRectangles);
+        }
+        freeRectangles.addAll(newFreeRectangles);
+        prune();
+        usedArea = usedArea + (long) used.width * used.height;
+    }
+
+    /**
+     * Adds the up to four maximal rectangles of the free rectangle, which are
+     * not covered by the used rectangle.
+     */
+    private static void split(Rectangle free, Rectangle used, List<Rectangle> result) {
+        if (used.x > free.x) {
+            result.add(new Rectangle(free.x, free.y, used.x - free.x, free.height));
+        }
+        if (used.x + used.width < free.x + free.width) {
+            int x = used.x + used.width;
+            result.add(new Rectangle(x, free.y, free.x + free.width - x, free.height));
+        }
+        if (used.y > free.y) {
+            result.add(new Rectangle(free.x, free.y, free.width, used.y - free.y));
+        }
+        if (used.y + used.height < free.y + free.height) {
+            int y = used.y + used.height;
+            result.add(new Rectangle(free.x, y, free.width, free.y + free.height - y));
+        }
+    }
+
+    /**
+     * Removes free rectangles contained in other free rectangles.
+     */
+    private void prune() {
+        for (int i = 0; i < freeRectangles.size(); i++) {
+            Rectangle a = freeRectangles.get(i);
+            for (int j = i + 1; j < freeRectangles.size(); j++) {
+                Rectangle b = freeRectangles.get(j);
+                if (b.contains(a)) {
+                    freeRectangles.remove(i);
+                    i--;
+                    break;
+                }
+                if (a.contains(b)) {
+                    freeRectangles.remove(j);
+                    j--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects durations, transferred bytes, touched pixels and allocated bytes of
+ * the stages of a command.
+ *
+ * Every measured run of a command collects into its own instance started by
+ * {@link #begin()}. If no run is measured, {@link #start(Stage)} returns a
+ * timer, which records nothing. A run started while another one is measured
+ * (for example a request of the serve command) has its own values, which are
+ * added to the enclosing run too, so neither of them is reset or stopped by
+ * the other. Runs are expected to be executed one after another, not in
+ * parallel.
+ *
+ * The values of one stage are summed over all threads, so the duration of a
+ * stage executed in parallel may be longer than the duration of the whole
+ * command. Allocated bytes are measured per thread and are available only, if
+ * the JVM supports it.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public final class Metrics {
+
+    public static final String METRICS = "metrics";
+    private static final String CSV = ".csv";
+    private static final Timer DISABLED = new Timer(null, null);
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = findThreadMXBean();
+    private static volatile Metrics current;
+    private final Metrics parent;
+    private final Map<Stage, Values> values = new EnumMap<>(Stage.class);
+
+    /**
+     * Stages of the commands.
+     */
+    public enum Stage {
+        COMMAND, CSV_PARSE, LAYOUT, DECODE, RENDER, ENCODE, WRITE;
+
+        String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private Metrics(Metrics parent) {
+        this.parent = parent;
+        for (Stage stage : Stage.values()) {
+            values.put(stage, new Values());
+        }
+    }
+
+    /**
+     * Starts collecting of a run, until {@link #end()} is called.
+     *
+     * @return metrics of the run
+     */
+    public static Metrics begin() {
+        Metrics metrics = new Metrics(current);
+        current = metrics;
+        return metrics;
+    }
+
+    /**
+     * Stops collecting of this run, the enclosing run (if any) collects
+     * again. The collected values are kept.
+     */
+    public void end() {
+        current = parent;
+    }
+
+    public static boolean isEnabled() {
+        return current != null;
+    }
+
+    /**
+     * Starts measuring of the stage in the current thread. The returned timer
+     * must be closed in the same thread.
+     *
+     * @param stage stage
+     * @return timer
+     */
+    public static Timer start(Stage stage) {
+        Metrics metrics = current;
+        return metrics == null ? DISABLED : new Timer(metrics, stage);
+    }
+
+    /**
+     * Writes the collected values as CSV (if the name of the file ends with
+     * .csv) or as JSON.
+     *
+     * @param file report file
+     * @param command name of the measured command
+     */
+    public void writeReport(File file, String command) {
+        boolean csv = file.getName().toLowerCase(Locale.ROOT).endsWith(CSV);
+        Utils.writeTextToFile(csv ? toCsv() : toJson(command), file);
+    }
+
+    String toCsv() {
+        StringBuilder sb = new StringBuilder("stage;count;millis;bytesRead;bytesWritten;pixels;allocatedBytes\n");
+        for (Map.Entry<Stage, Values> e : values.entrySet()) {
+            Values v = e.getValue();
+            if (v.count.sum() == 0) {
+                continue;
+            }
+            sb.append(e.getKey().getName()).append(';')
+                    .append(v.count.sum()).append(';')
+                    .append(toMillis(v.nanos.sum())).append(';')
+                    .append(v.bytesRead.sum()).append(';')
+                    .append(v.bytesWritten.sum()).append(';')
+                    .append(v.pixels.sum()).append(';')
+                    .append(v.allocatedBytes.sum()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    String toJson(String command) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"command\": \"").append(command.replace("\\", "\\\\").replace("\"", "\\\"")).append("\",\n");
+        sb.append("  \"allocationsMeasured\": ").append(ALLOCATIONS != null).append(",\n");
+        sb.append("  \"stages\": [");
+        boolean first = true;
+        for (Map.Entry<Stage, Values> e : values.entrySet()) {
+            Values v = e.getValue();
+            if (v.count.sum() == 0) {
+                continue;
+            }
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("    {\"stage\": \"").append(e.getKey().getName())
+                    .append("\", \"count\": ").append(v.count.sum())
+                    .append(", \"millis\": ").append(toMillis(v.nanos.sum()))
+                    .append(", \"bytesRead\": ").append(v.bytesRead.sum())
+                    .append(", \"bytesWritten\": ").append(v.bytesWritten.sum())
+                    .append(", \"pixels\": ").append(v.pixels.sum())
+                    .append(", \"allocatedBytes\": ").append(v.allocatedBytes.sum())
+                    .append('}');
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000d);
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadMXBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        return sunBean;
+    }
+
+    /**
+     * Measurement of one execution of a stage, the values are added to the
+     * stage of the run, which was measured when the timer was started, and of
+     * its enclosing runs, when the timer is closed.
+     */
+    public static final class Timer implements AutoCloseable {
+
+        private final Metrics metrics;
+        private final Stage stage;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        private long bytesRead;
+        private long bytesWritten;
+        private long pixels;
+
+        private Timer(Metrics metrics, Stage stage) {
+            this.metrics = metrics;
+            this.stage = stage;
+            this.startAllocatedBytes = stage != null && ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() : 0;
+            this.startNanos = stage != null ? System.nanoTime() : 0;
+        }
+
+        public Timer addBytesRead(long bytes) {
+            bytesRead = bytesRead + bytes;
+            return this;
+        }
+
+        public Timer addBytesWritten(long bytes) {
+            bytesWritten = bytesWritten + bytes;
+            return this;
+        }
+
+        public Timer addPixels(long count) {
+            pixels = pixels + count;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (stage == null) {
+                return;
+            }
+            long nanos = System.nanoTime() - startNanos;
+            long allocatedBytes = ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() - startAllocatedBytes : 0;
+            for (Metrics m = metrics; m != null; m = m.parent) {
+                Values values = m.values.get(stage);
+                values.count.increment();
+                values.nanos.add(nanos);
+                values.bytesRead.add(bytesRead);
+                values.bytesWritten.add(bytesWritten);
+                values.pixels.add(pixels);
+                values.allocatedBytes.add(allocatedBytes);
+            }
+        }
+    }
+
+    private static class Values {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder pixels = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+    }
+}
@@ -0,0 +1,170 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Content-addressed cache of command outputs.
+ *
+ * The key is the SHA-256 hash of everything the output depends on (the
+ * command, its options, the hash of the input image and of the sprite rows).
+ * The output is stored as {cache}/{first two characters of the key}/{key}.
+ * If an output with the same key is in the cache, it is copied to the target
+ * instead of being computed again, or nothing is done, if the target already
+ * has this content.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class OutputCache {
+
+    private static final Logger LOG = LogManager.getLogger(OutputCache.class);
+    public static final String CACHE = "cache";
+    public static final String DISABLED = "off";
+    public static final String DEFAULT_DIRECTORY = ".spriteutils-cache";
+    /**
+     * Options, which have no influence on the content of the outputs.
+     */
+    private static final Set<String> IGNORED_OPTIONS = Set.of(BatchProcessor.DIR, BatchProcessor.FILES,
+            BatchProcessor.THREADS, Metrics.METRICS, CACHE);
+
+    private final File directory;
+    private final FileHashes fileHashes;
+
+    /**
+     * @param directory directory of the cache
+     * @param fileHashes hashes used to check, whether a target is up to date
+     */
+    public OutputCache(File directory, FileHashes fileHashes) {
+        this.directory = directory;
+        this.fileHashes = fileHashes;
+    }
+
+    /**
+     * @param batchProcessor batch processor of the command
+     * @param spriteUtilsArgs arguments of the command
+     * @return cache in the directory given by the cache option or in
+     * {@link #DEFAULT_DIRECTORY} in the working directory, null if the cache
+     * option is {@link #DISABLED}
+     */
+    public static OutputCache create(BatchProcessor batchProcessor, SpriteUtilsArgs spriteUtilsArgs) {
+        String cache = spriteUtilsArgs.getArgument(CACHE);
+        if (DISABLED.equals(cache)) {
+            return null;
+        }
+        return new OutputCache(cache == null || cache.isBlank()
+                ? new File(batchProcessor.getWorkingDirectory(), DEFAULT_DIRECTORY) : new File(cache),
+                batchProcessor.getFileHashes());
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param spriteUtilsArgs arguments of the command
+     * @return options influencing the outputs in a stable order
+     */
+    public static String describeOptions(SpriteUtilsArgs spriteUtilsArgs) {
+        Map<String, String> options = new TreeMap<>(spriteUtilsArgs.getArguments());
+        options.keySet().removeAll(IGNORED_OPTIONS);
+        return options.toString();
+    }
+
+    /**
+     * @param parts everything the output depends on
+     * @return key
+     */
+    public String createKey(String... parts) {
+        return Utils.calculateSHA256Hash(String.join("\n", parts));
+    }
+
+    /**
+     * Copies the cached output to the target, if it is in the cache.
+     *
+     * @param key key
+     * @param target target file
+     * @return true, if the target has the cached content now, false, if the
+     * output is not cached
+     */
+    public boolean restore(String key, File target) {
+        File cached = getFile(key);
+        if (!cached.exists()) {
+            return false;
+        }
+        if (target.exists() && target.length() == cached.length()
+                && fileHashes.getHash(target).equals(getContentHash(cached))) {
+            LOG.debug("Target is up to date: {}", target.getAbsolutePath());
+            return true;
+        }
+        Utils.transferFile(cached, target);
+        LOG.debug("Cached output was copied to {}", target.getAbsolutePath());
+        return true;
+    }
+
+    /**
+     * Stores a copy of the output.
+     *
+     * @param key key
+     * @param output output file
+     */
+    public void store(String key, File output) {
+        File cached = getFile(key);
+        File parent = cached.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new SpriteUtilsException("Creating directory failed: " + parent.getAbsolutePath());
+        }
+        //Other threads and processes may read the entry and its hash, so both must appear complete at once,
+        //the hash only after the entry it describes.
+        String[] hash = new String[1];
+        try {
+            Utils.writeAtomically(cached, temp -> {
+                Utils.transferFile(output, temp);
+                hash[0] = Utils.calculateSHA256Hash(temp);
+            });
+            Utils.writeAtomically(getHashFile(cached), temp -> Files.writeString(temp.toPath(), hash[0]));
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing file failed: " + cached.getAbsolutePath(), ex);
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    private static File getHashFile(File cached) {
+        return new File(cached.getAbsolutePath() + ".sha256");
+    }
+
+    /**
+     * @return hash of the content of the cached file
+     */
+    private static String getContentHash(File cached) {
+        File hashFile = getHashFile(cached);
+        return hashFile.exists() ? Utils.readTextFromFile(hashFile).trim() : Utils.calculateSHA256Hash(cached);
+    }
+}
@@ -0,0 +1,207 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Processes items in three stages connected by queues: load (I/O), transform
+ * (CPU) and store (I/O).
+ *
+ * The I/O stages run on virtual threads, the transform stage runs in a fork
+ * join pool of platform threads, so reading and writing of some items
+ * overlaps with the computation of other items. A loaded item holds its load
+ * permit until the transform stage takes it from the queue and a transformed
+ * item holds its transform permit until the store stage takes it, so at most
+ * ioParallelism + queueCapacity loaded items and cpuParallelism +
+ * queueCapacity transformed items are in memory. Because of the permits, the
+ * queues never block, so no worker of the fork join pool waits for a queue.
+ * If a stage returns null, the next stages are skipped for the item. After
+ * the first failure, the remaining items are skipped and the failure is
+ * thrown.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class Pipeline {
+
+    private final int cpuParallelism;
+    private final int ioParallelism;
+    private final int queueCapacity;
+
+    /**
+     * @param cpuParallelism max number of items transformed at the same time
+     * @param ioParallelism max number of items loaded and max number of items
+     * stored at the same time
+     * @param queueCapacity max number of items waiting between two stages
+     */
+    public Pipeline(int cpuParallelism, int ioParallelism, int queueCapacity) {
+        this.cpuParallelism = cpuParallelism;
+        this.ioParallelism = ioParallelism;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Processes all items and waits until all of them are stored.
+     *
+     * @param <I> item type
+     * @param <S> type of loaded items
+     * @param <R> type of transformed items
+     * @param items items
+     * @param load I/O stage
+     * @param transform CPU stage
+     * @param store I/O stage
+     * @throws SpriteUtilsException if any stage failed for any item
+     */
+    public <I, S, R> void run(List<I> items, Function<I, S> load, BiFunction<I, S, R> transform, BiConsumer<I, R> store) {
+        if (items.isEmpty()) {
+            return;
+        }
+        BlockingQueue<Entry<I, S>> loaded = new LinkedBlockingQueue<>();
+        BlockingQueue<Entry<I, R>> transformed = new LinkedBlockingQueue<>();
+        Semaphore loadPermits = new Semaphore(ioParallelism + queueCapacity);
+        Semaphore loading = new Semaphore(ioParallelism);
+        Semaphore transformPermits = new Semaphore(cpuParallelism + queueCapacity);
+        Semaphore storing = new Semaphore(ioParallelism);
+        CountDownLatch stored = new CountDownLatch(items.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService io = Executors.newVirtualThreadPerTaskExecutor();
+        ForkJoinPool cpu = new ForkJoinPool(cpuParallelism);
+        boolean finished = false;
+        try {
+            io.execute(() -> {
+                for (I item : items) {
+                    acquire(loadPermits);
+                    acquire(loading);
+                    io.execute(() -> {
+                        S value = null;
+                        try {
+                            value = failure.get() == null ? load.apply(item) : null;
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            loading.release();
+                            //Released by the transform stage, when it takes the entry.
+                            loaded.add(new Entry<>(item, value));
+                        }
+                    });
+                }
+            });
+            io.execute(() -> {
+                for (int i = 0; i < items.size(); i++) {
+                    Entry<I, S> entry = take(loaded);
+                    acquire(transformPermits);
+                    loadPermits.release();
+                    cpu.execute(() -> {
+                        R value = null;
+                        try {
+                            value = entry.value != null && failure.get() == null ? transform.apply(entry.item, entry.value) : null;
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            //Released by the store stage, when it takes the entry.
+                            transformed.add(new Entry<>(entry.item, value));
+                        }
+                    });
+                }
+            });
+            for (int i = 0; i < items.size(); i++) {
+                Entry<I, R> entry = transformed.take();
+                storing.acquire();
+                transformPermits.release();
+                io.execute(() -> {
+                    try {
+                        if (entry.value != null && failure.get() == null) {
+                            store.accept(entry.item, entry.value);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        storing.release();
+                        stored.countDown();
+                    }
+                });
+            }
+            stored.await();
+            finished = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SpriteUtilsException("Processing was interrupted", ex);
+        } finally {
+            if (finished) {
+                io.close();
+                cpu.shutdown();
+            } else {
+                io.shutdownNow();
+                cpu.shutdownNow();
+            }
+        }
+        Throwable t = failure.get();
+        if (t instanceof SpriteUtilsException) {
+            throw (SpriteUtilsException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new SpriteUtilsException("Processing failed: " + t.getMessage(), (Exception) t);
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SpriteUtilsException("Processing was interrupted", ex);
+        }
+    }
+
+    private static <T> T take(BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SpriteUtilsException("Processing was interrupted", ex);
+        }
+    }
+
+    private static class Entry<I, V> {
+
+        private final I item;
+        private final V value;
+
+        Entry(I item, V value) {
+            this.item = item;
+            this.value = value;
+        }
+    }
+}
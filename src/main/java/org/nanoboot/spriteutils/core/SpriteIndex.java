@@ -0,0 +1,379 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import dev.mccue.guava.hash.Hasher;
+import dev.mccue.guava.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Columnar storage of sprite sheet rows.
+ *
+ * Every attribute is kept in its own primitive array, file names and groups
+ * are stored once and referenced by their id. Rows can be looked up by file
+ * and by file, group and number in group in constant time.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class SpriteIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NO_ROW = -1;
+
+    private int size;
+    private int[] fileIds = new int[INITIAL_CAPACITY];
+    private int[] groupIds = new int[INITIAL_CAPACITY];
+    private int[] numbersInGroup = new int[INITIAL_CAPACITY];
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private int[] columns = new int[INITIAL_CAPACITY];
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private int[] widths = new int[INITIAL_CAPACITY];
+    private int[] heights = new int[INITIAL_CAPACITY];
+    private int[] numbersPerSheet = new int[INITIAL_CAPACITY];
+    private String[] notes = new String[INITIAL_CAPACITY];
+    private String[] tags = new String[INITIAL_CAPACITY];
+
+    private final List<String> files = new ArrayList<>();
+    private final Map<String, Integer> fileIdsByName = new HashMap<>();
+    private final List<String> groups = new ArrayList<>();
+    private final Map<String, Integer> groupIdsByName = new HashMap<>();
+
+    private int[][] rowsOfFile = new int[INITIAL_CAPACITY][];
+    private int[] rowsOfFileCount = new int[INITIAL_CAPACITY];
+
+    private int[] keyTable = newKeyTable(INITIAL_CAPACITY * 2);
+
+    /**
+     * Adds a copy of the row.
+     *
+     * @param spriteSheetRow row
+     * @return index of the added row
+     */
+    public int add(SpriteSheetRow spriteSheetRow) {
+        if (size == xs.length) {
+            grow();
+        }
+        int i = size;
+        int fileId = fileId(spriteSheetRow.file);
+        fileIds[i] = fileId;
+        groupIds[i] = groupId(spriteSheetRow.group);
+        numbersInGroup[i] = spriteSheetRow.numberInGroup;
+        rows[i] = spriteSheetRow.row;
+        columns[i] = spriteSheetRow.column;
+        xs[i] = spriteSheetRow.x;
+        ys[i] = spriteSheetRow.y;
+        widths[i] = spriteSheetRow.width;
+        heights[i] = spriteSheetRow.height;
+        numbersPerSheet[i] = spriteSheetRow.numberPerSheet;
+        notes[i] = spriteSheetRow.notes;
+        tags[i] = spriteSheetRow.tags;
+        size++;
+
+        int[] ofFile = rowsOfFile[fileId];
+        int count = rowsOfFileCount[fileId];
+        if (count == ofFile.length) {
+            ofFile = Arrays.copyOf(ofFile, count * 2);
+            rowsOfFile[fileId] = ofFile;
+        }
+        ofFile[count] = i;
+        rowsOfFileCount[fileId] = count + 1;
+
+        if (size * 2 > keyTable.length) {
+            rehash(keyTable.length * 2);
+        } else {
+            putKey(i);
+        }
+        return i;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return names of the files in the order of their first occurrence
+     */
+    public List<String> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * @param file file name
+     * @return indexes of the rows of the file or null, if there is no such
+     * file
+     */
+    public int[] getRowIndexes(String file) {
+        Integer fileId = fileIdsByName.get(file);
+        return fileId == null ? null : Arrays.copyOf(rowsOfFile[fileId], rowsOfFileCount[fileId]);
+    }
+
+    /**
+     * @param file file name
+     * @return rows of the file or null, if there is no such file
+     */
+    public List<SpriteSheetRow> getRows(String file) {
+        Integer fileId = fileIdsByName.get(file);
+        if (fileId == null) {
+            return null;
+        }
+        final int[] indexes = rowsOfFile[fileId];
+        final int count = rowsOfFileCount[fileId];
+        return new RowList(indexes, count);
+    }
+
+    /**
+     * @param file file name
+     * @param group group
+     * @param numberInGroup number in group
+     * @return index of the row or -1, if there is no such row
+     */
+    public int find(String file, String group, int numberInGroup) {
+        Integer fileId = fileIdsByName.get(file);
+        Integer groupId = groupIdsByName.get(group);
+        if (fileId == null || groupId == null) {
+            return NO_ROW;
+        }
+        int mask = keyTable.length - 1;
+        int slot = hash(fileId, groupId, numberInGroup) & mask;
+        while (keyTable[slot] != NO_ROW) {
+            int i = keyTable[slot];
+            if (fileIds[i] == fileId && groupIds[i] == groupId && numbersInGroup[i] == numberInGroup) {
+                return i;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_ROW;
+    }
+
+    /**
+     * @param i row index
+     * @return new row object with the values of the row
+     */
+    public SpriteSheetRow toSpriteSheetRow(int i) {
+        SpriteSheetRow r = new SpriteSheetRow();
+        r.file = getFile(i);
+        r.group = getGroup(i);
+        r.numberInGroup = numbersInGroup[i];
+        r.row = rows[i];
+        r.column = columns[i];
+        r.x = xs[i];
+        r.y = ys[i];
+        r.width = widths[i];
+        r.height = heights[i];
+        r.notes = notes[i];
+        r.tags = tags[i];
+        r.numberPerSheet = numbersPerSheet[i];
+        return r;
+    }
+
+    public int getFileId(int i) {
+        return fileIds[i];
+    }
+
+    public String getFile(int i) {
+        return files.get(fileIds[i]);
+    }
+
+    public String getGroup(int i) {
+        return groups.get(groupIds[i]);
+    }
+
+    public int getNumberInGroup(int i) {
+        return numbersInGroup[i];
+    }
+
+    public int getRow(int i) {
+        return rows[i];
+    }
+
+    public int getColumn(int i) {
+        return columns[i];
+    }
+
+    public int getX(int i) {
+        return xs[i];
+    }
+
+    public int getY(int i) {
+        return ys[i];
+    }
+
+    public int getWidth(int i) {
+        return widths[i];
+    }
+
+    public int getHeight(int i) {
+        return heights[i];
+    }
+
+    public int getNumberPerSheet(int i) {
+        return numbersPerSheet[i];
+    }
+
+    public String getNotes(int i) {
+        return notes[i];
+    }
+
+    public String getTags(int i) {
+        return tags[i];
+    }
+
+    /**
+     * Computes the SHA-256 fingerprint of the values of the rows from
+     * (inclusive) to (exclusive).
+     *
+     * @param from index of the first row
+     * @param to index after the last row
+     * @return fingerprint as hex string
+     */
+    public String fingerprint(int from, int to) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (int i = from; i < to; i++) {
+            hasher.putString(getFile(i), StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(getGroup(i), StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putInt(numbersInGroup[i]).putInt(rows[i]).putInt(columns[i]);
+            hasher.putInt(xs[i]).putInt(ys[i]).putInt(widths[i]).putInt(heights[i]);
+            hasher.putString(notes[i], StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(tags[i], StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    void setX(int i, int x) {
+        xs[i] = x;
+    }
+
+    void setHeight(int i, int height) {
+        heights[i] = height;
+    }
+
+    void setNumberPerSheet(int i, int numberPerSheet) {
+        numbersPerSheet[i] = numberPerSheet;
+    }
+
+    private int fileId(String file) {
+        Integer id = fileIdsByName.get(file);
+        if (id != null) {
+            return id;
+        }
+        id = files.size();
+        files.add(file);
+        fileIdsByName.put(file, id);
+        if (id == rowsOfFile.length) {
+            rowsOfFile = Arrays.copyOf(rowsOfFile, id * 2);
+            rowsOfFileCount = Arrays.copyOf(rowsOfFileCount, id * 2);
+        }
+        rowsOfFile[id] = new int[INITIAL_CAPACITY];
+        return id;
+    }
+
+    private int groupId(String group) {
+        Integer id = groupIdsByName.get(group);
+        if (id != null) {
+            return id;
+        }
+        id = groups.size();
+        groups.add(group);
+        groupIdsByName.put(group, id);
+        return id;
+    }
+
+    private void grow() {
+        int capacity = xs.length * 2;
+        fileIds = Arrays.copyOf(fileIds, capacity);
+        groupIds = Arrays.copyOf(groupIds, capacity);
+        numbersInGroup = Arrays.copyOf(numbersInGroup, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        numbersPerSheet = Arrays.copyOf(numbersPerSheet, capacity);
+        notes = Arrays.copyOf(notes, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+    }
+
+    private static int[] newKeyTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, NO_ROW);
+        return table;
+    }
+
+    private static int hash(int fileId, int groupId, int numberInGroup) {
+        int h = fileId;
+        h = 31 * h + groupId;
+        h = 31 * h + numberInGroup;
+        return h ^ (h >>> 16);
+    }
+
+    private void putKey(int i) {
+        int mask = keyTable.length - 1;
+        int slot = hash(fileIds[i], groupIds[i], numbersInGroup[i]) & mask;
+        while (keyTable[slot] != NO_ROW) {
+            slot = (slot + 1) & mask;
+        }
+        keyTable[slot] = i;
+    }
+
+    private void rehash(int capacity) {
+        keyTable = newKeyTable(capacity);
+        for (int i = 0; i < size; i++) {
+            putKey(i);
+        }
+    }
+
+    /**
+     * Read-only view of the rows of one file. Every call of get creates a new
+     * row object, changes of it are not written back to the index.
+     */
+    private class RowList extends AbstractList<SpriteSheetRow> implements RandomAccess {
+
+        private final int[] indexes;
+        private final int count;
+
+        RowList(int[] indexes, int count) {
+            this.indexes = indexes;
+            this.count = count;
+        }
+
+        @Override
+        public SpriteSheetRow get(int i) {
+            if (i < 0 || i >= count) {
+                throw new IndexOutOfBoundsException("Index " + i + " is out of bounds for size " + count);
+            }
+            return toSpriteSheetRow(indexes[i]);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+/**
+ * Validates the rows of one file and computes the values, which may be
+ * omitted in spritesheet.csv: x (right of the previous sprite), height
+ * (relative to the previous sprite) and the number per sheet.
+ *
+ * One instance holds the state of one file only, so files can be resolved
+ * independently of each other (also in parallel).
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+class SpriteLayoutResolver {
+
+    private final SpriteIndex index;
+    private boolean first = true;
+    private int lastRow = -1;
+    private int lastColumn = -1;
+    private int lastX = -1;
+    private int lastWidth = -1;
+    private int lastHeight = -1;
+    private int numberPerSheet = 0;
+
+    SpriteLayoutResolver(SpriteIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Resolves the rows from (inclusive) to (exclusive), which must all belong
+     * to the same file.
+     *
+     * @param from index of the first row
+     * @param to index after the last row
+     */
+    void resolve(int from, int to) {
+        for (int i = from; i < to; i++) {
+            resolve(i);
+        }
+    }
+
+    private void resolve(int i) {
+        int row = index.getRow(i);
+        int column = index.getColumn(i);
+        if (first) {
+            if (row != 1) {
+                String msg = "Row of the first sprite in file must be equal to 1, but value for file " + index.getFile(i) + " is " + row;
+                throw new SpriteUtilsException(msg);
+            }
+            if (column != 1) {
+                String msg = "Column of the first sprite in file must be equal to 1, but value for file " + index.getFile(i) + " is " + column;
+                throw new SpriteUtilsException(msg);
+            }
+            first = false;
+        } else {
+            if (row != lastRow && row != lastRow + 1) {
+                throw new SpriteUtilsException("Unexpected row for " + createId(i));
+            }
+            if (row == lastRow && column != lastColumn + 1) {
+                throw new SpriteUtilsException("Unexpected column for " + createId(i));
+            }
+        }
+        numberPerSheet++;
+        index.setNumberPerSheet(i, numberPerSheet);
+
+        int x = index.getX(i);
+        if (x == -1) {
+            if (column == 1) {
+                x = 0;
+            } else if (lastX == -1) {
+                throw new SpriteUtilsException("Could not compute X for " + createId(i));
+            } else {
+                x = lastX + lastWidth + 1;
+            }
+            index.setX(i, x);
+        }
+        int height = index.getHeight(i);
+        if (height <= 0) {
+            if (lastHeight == -1) {
+                throw new SpriteUtilsException("Could not compute height for " + createId(i));
+            }
+            height = lastHeight + ((-1) * height);
+            index.setHeight(i, height);
+        }
+        lastRow = row;
+        lastColumn = column;
+        lastX = x;
+        lastWidth = index.getWidth(i);
+        lastHeight = height;
+    }
+
+    private String createId(int i) {
+        return index.toSpriteSheetRow(i).createId();
+    }
+}
@@ -6,10 +6,14 @@ package org.nanoboot.spriteutils.core;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.ToString;
 
 /**
@@ -20,95 +24,103 @@ import lombok.ToString;
 @ToString
 public class SpriteSheet {
 
-    private final Map<String, List<SpriteSheetRow>> map = new HashMap<>();
-    private static int lastX = -1;
-    private static int lastWidth = -1;
-    private static int lastHeight = -1;
-    private SpriteSheetRow lastSpriteSheetRow = null;
+    private static final int PARALLEL_RESOLVING_MIN_ROWS = 10000;
+    private final SpriteIndex index;
+    /**
+     * Used instead of the index, if the compiled manifest is up to date.
+     */
+    @Getter(AccessLevel.NONE)
+    private final CompiledManifest compiled;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, SpriteSpatialIndex> spatialIndexes = new ConcurrentHashMap<>();
 
     public SpriteSheet(File file) {
-        List<SpriteSheetRow> rows = new ArrayList<>();
-        String text = Utils.readTextFromFile(file);
-        text.lines().skip(1).forEach(l -> {
-            final SpriteSheetRow spriteSheetRow = new SpriteSheetRow(l);
-
-            if (lastSpriteSheetRow != null) {
-                if (!spriteSheetRow.file.equals(lastSpriteSheetRow.file)) {
-                    lastSpriteSheetRow = null;
-                }
-            }
-            if (lastSpriteSheetRow == null) {
-                spriteSheetRow.numberPerSheet = 1;
-                if (spriteSheetRow.getRow() != 1) {
-                    String msg = "Row of the first sprite in file must be equal to 1, but value for file " + spriteSheetRow.file + " is " + spriteSheetRow.getRow();
-                    throw new SpriteUtilsException(msg);
-                }
-                if (spriteSheetRow.getColumn() != 1) {
-                    String msg = "Column of the first sprite in file must be equal to 1, but value for file " + spriteSheetRow.file + " is " + spriteSheetRow.getColumn();
-                    throw new SpriteUtilsException(msg);
-                }
+        File compiledFile = new File(file.getAbsolutePath() + CompiledManifest.SUFFIX);
+        CompiledManifest upToDate = CompiledManifest.open(compiledFile, file);
+        if (upToDate != null) {
+            compiled = upToDate;
+            index = null;
+            return;
+        }
+        compiled = null;
+        index = new SpriteIndex();
+        SpriteSheetCsvParser parser = new SpriteSheetCsvParser();
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.CSV_PARSE)) {
+            parser.parse(file, index::add);
+            timer.addBytesRead(file.length());
+        }
+        List<int[]> blocks = findBlocks();
+        List<String> fingerprints = new ArrayList<>(blocks.size() + 1);
+        fingerprints.add(Utils.calculateSHA256Hash(parser.getHeader()));
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.LAYOUT)) {
+            fingerprints.addAll(resolve(blocks));
+        }
 
-            } else {
-                spriteSheetRow.numberPerSheet = lastSpriteSheetRow.numberPerSheet + 1;
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.WRITE)) {
+            File computed = new File(file.getAbsolutePath() + ".computed.csv");
+            timer.addBytesWritten(new ComputedSpriteSheetWriter(computed).write(parser.getHeader(), index, blocks, fingerprints));
+            CompiledManifest.write(compiledFile, file, index);
+            timer.addBytesWritten(compiledFile.length());
+        }
+    }
 
-                if(spriteSheetRow.row > lastSpriteSheetRow.row) {
-                    if(spriteSheetRow.row != lastSpriteSheetRow.row) {
-                        throw new SpriteUtilsException("Unexpected row for " + spriteSheetRow.createId());
-                    }
-                }
-                if(spriteSheetRow.row < lastSpriteSheetRow.row) {
-                        throw new SpriteUtilsException("Unexpected row for " + spriteSheetRow.createId());
-                }
-                
-                if(spriteSheetRow.row == lastSpriteSheetRow.row) {
-                    if(spriteSheetRow.column != (lastSpriteSheetRow.column + 1))
-                        throw new SpriteUtilsException("Unexpected column for " + spriteSheetRow.createId());
-                }
-            }
-            rows.add(spriteSheetRow);
-            if (!map.containsKey(spriteSheetRow.file)) {
-                map.put(spriteSheetRow.file, new ArrayList<>());
-            }
-            map.get(spriteSheetRow.file).add(spriteSheetRow);
-            if (spriteSheetRow.x == -1) {
-                if (spriteSheetRow.column == 1) {
-                    spriteSheetRow.x = 0;
-                } else {
-                    if (lastX == -1) {
-                        throw new SpriteUtilsException("Could not compute X for " + spriteSheetRow.createId());
-                    } else {
-                        spriteSheetRow.x = lastX + lastWidth + 1;
-                    }
-                }
-            }
-            lastX = spriteSheetRow.getX();
-            lastWidth = spriteSheetRow.getWidth();
-            if (spriteSheetRow.height <= 0) {
-                if (lastHeight == -1) {
-                    throw new SpriteUtilsException("Could not compute height for " + spriteSheetRow.createId());
-                } else {
-                    spriteSheetRow.height = lastHeight + ((-1) * spriteSheetRow.height);
-                }
+    /**
+     * @return from (inclusive) and to (exclusive) row index of every block of
+     * consecutive rows of the same file
+     */
+    private List<int[]> findBlocks() {
+        List<int[]> blocks = new ArrayList<>();
+        int blockStart = 0;
+        for (int i = 1; i <= index.size(); i++) {
+            if (i == index.size() || index.getFileId(i) != index.getFileId(blockStart)) {
+                blocks.add(new int[]{blockStart, i});
+                blockStart = i;
             }
-            lastHeight = spriteSheetRow.height;
-            lastSpriteSheetRow = spriteSheetRow;
-            System.out.println(spriteSheetRow.toCsvLine());
-        });
-        File computed = new File(file.getAbsolutePath() + ".computed.csv");
-        if(computed.exists()){
-            computed.delete();
         }
-        StringBuilder sb = new StringBuilder(text.lines().limit(1).findFirst().orElse(""));
-        sb.append("\n");
-        rows.stream().forEach(r-> {
-        sb.append(r.toCsvLine()).append("\n");
-        });
-        Utils.writeTextToFile(sb.toString(), computed);
+        return blocks;
+    }
 
+    /**
+     * Resolves every block with its own resolver. Big sprite sheets are
+     * resolved in parallel.
+     *
+     * @param blocks blocks
+     * @return fingerprints of the blocks taken before resolving
+     */
+    private List<String> resolve(List<int[]> blocks) {
+        String[] fingerprints = new String[blocks.size()];
+        IntStream blockIndexes = IntStream.range(0, blocks.size());
+        if (index.size() >= PARALLEL_RESOLVING_MIN_ROWS) {
+            blockIndexes = blockIndexes.parallel();
+        }
+        blockIndexes.forEach(b -> {
+            int[] block = blocks.get(b);
+            fingerprints[b] = index.fingerprint(block[0], block[1]);
+            new SpriteLayoutResolver(index).resolve(block[0], block[1]);
+        });
+        return Arrays.asList(fingerprints);
     }
 
     public List<SpriteSheetRow> getSpriteSheets(String file) {
-        return map.get(file);
+        return compiled != null ? compiled.getRows(file) : index.getRows(file);
+    }
+
+    /**
+     * @param file file name
+     * @return spatial index of the sprites of the file, which is created on
+     * the first call, or null, if there is no such file
+     */
+    public SpriteSpatialIndex getSpatialIndex(String file) {
+        List<SpriteSheetRow> rows = getSpriteSheets(file);
+        return rows == null ? null : spatialIndexes.computeIfAbsent(file, f -> new SpriteSpatialIndex(rows));
+    }
+
+    public SpriteSheetRow getSpriteSheet(String file, String group, int numberInGroup) {
+        if (compiled != null) {
+            return compiled.find(file, group, numberInGroup);
+        }
+        int i = index.find(file, group, numberInGroup);
+        return i == -1 ? null : index.toSpriteSheetRow(i);
     }
 
 }
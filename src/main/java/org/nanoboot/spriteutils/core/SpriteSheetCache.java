@@ -0,0 +1,94 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * Cache of loaded sprite sheets shared by all commands, so a long-running
+ * process (see the serve command) loads an unchanged spritesheet.csv only
+ * once.
+ *
+ * Sprite sheets are keyed by path, modification time and size of the file,
+ * so a changed file is loaded again. At most {@link #MAX_ENTRIES} sprite
+ * sheets are kept, the least recently used ones are evicted first.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class SpriteSheetCache {
+
+    private static final int MAX_ENTRIES = 32;
+    private static final SpriteSheetCache INSTANCE = new SpriteSheetCache();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public static SpriteSheetCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached sprite sheet or loads it.
+     *
+     * @param file spritesheet.csv
+     * @return sprite sheet
+     */
+    public synchronized SpriteSheet get(File file) {
+        String path = file.getAbsolutePath();
+        Key key = new Key(file.lastModified(), file.length());
+        Entry entry = entries.get(path);
+        if (entry != null && entry.key.equals(key)) {
+            return entry.spriteSheet;
+        }
+        SpriteSheet spriteSheet = new SpriteSheet(file);
+        entries.put(path, new Entry(key, spriteSheet));
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > MAX_ENTRIES && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        return spriteSheet;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Data
+    private static class Key {
+
+        private final long lastModified;
+        private final long length;
+    }
+
+    private static class Entry {
+
+        private final Key key;
+        private final SpriteSheet spriteSheet;
+
+        Entry(Key key, SpriteSheet spriteSheet) {
+            this.key = key;
+            this.spriteSheet = spriteSheet;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import lombok.Getter;
+
+/**
+ * Streaming parser of spritesheet.csv files.
+ *
+ * The file is read once through a file channel into a reusable buffer. Lines
+ * are tokenized in place, numbers are parsed directly from the bytes and
+ * repeated texts (file names, groups, ...) are shared instead of being created
+ * again for every row. Instances are not thread-safe.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class SpriteSheetCsvParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_COLUMNS = 16;
+    private static final byte SEPARATOR = ';';
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private final int[] fieldStart = new int[MAX_COLUMNS];
+    private final int[] fieldEnd = new int[MAX_COLUMNS];
+    private final StringCache stringCache = new StringCache();
+    private final SpriteSheetRow row = new SpriteSheetRow();
+    @Getter
+    private String header = "";
+    private File file;
+    private long lineNumber;
+
+    /**
+     * Parses the file and passes every row (except the header) to the
+     * consumer. The same row object is filled again for every line, so the
+     * consumer must copy the values it wants to keep.
+     *
+     * @param file file to parse, if the file does not exist, no row is passed
+     * @param consumer consumer of the parsed rows
+     */
+    public void parse(File file, Consumer<SpriteSheetRow> consumer) {
+        this.file = file;
+        this.header = "";
+        this.lineNumber = 0;
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int start = 0;
+            int end = 0;
+            boolean eof = false;
+            while (!eof) {
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end = end - start;
+                    start = 0;
+                }
+                if (end == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    end = end + read;
+                }
+                int lineStart = start;
+                for (int i = start; i < end; i++) {
+                    if (buffer[i] == NEW_LINE) {
+                        processLine(lineStart, i, consumer);
+                        lineStart = i + 1;
+                    }
+                }
+                if (eof && lineStart < end) {
+                    processLine(lineStart, end, consumer);
+                    lineStart = end;
+                }
+                start = lineStart;
+            }
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Reading file failed: " + file.getAbsolutePath(), ex);
+        }
+    }
+
+    private void processLine(int from, int to, Consumer<SpriteSheetRow> consumer) {
+        lineNumber++;
+        if (to > from && buffer[to - 1] == CARRIAGE_RETURN) {
+            to--;
+        }
+        if (lineNumber == 1) {
+            header = new String(buffer, from, to - from, StandardCharsets.UTF_8);
+            return;
+        }
+        if (to == from) {
+            return;
+        }
+        int count = 0;
+        int start = from;
+        for (int i = from; i <= to && count < MAX_COLUMNS; i++) {
+            if (i == to || buffer[i] == SEPARATOR) {
+                fieldStart[count] = start;
+                fieldEnd[count] = i;
+                count++;
+                start = i + 1;
+            }
+        }
+        if (count < 9) {
+            throw new SpriteUtilsException("Line " + lineNumber + " of file " + file.getAbsolutePath() + " has only " + count + " columns.");
+        }
+        int i = 0;
+        row.file = text(i++);
+        row.group = text(i++);
+        row.numberInGroup = number(i++);
+        row.row = number(i++);
+        row.column = number(i++);
+        row.x = isBlank(i) ? -1 : number(i);
+        i++;
+        row.y = number(i++);
+        row.width = number(i++);
+        row.height = number(i++);
+        if (row.column > 1) {
+            row.height = row.height * (-1);
+        }
+        row.notes = count > i ? text(i++) : "";
+        row.tags = count > i ? text(i++) : "";
+        row.numberPerSheet = 0;
+        consumer.accept(row);
+    }
+
+    private boolean isBlank(int field) {
+        for (int i = fieldStart[field]; i < fieldEnd[field]; i++) {
+            if (!Character.isWhitespace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String text(int field) {
+        return stringCache.get(buffer, fieldStart[field], fieldEnd[field]);
+    }
+
+    private int number(int field) {
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        while (from < to && buffer[from] == ' ') {
+            from++;
+        }
+        while (to > from && buffer[to - 1] == ' ') {
+            to--;
+        }
+        boolean negative = from < to && buffer[from] == '-';
+        if (negative || (from < to && buffer[from] == '+')) {
+            from++;
+        }
+        if (from == to) {
+            throw invalidNumber(field);
+        }
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalidNumber(field);
+            }
+            result = result * 10 + digit;
+            if (result > Integer.MAX_VALUE + 1L) {
+                throw invalidNumber(field);
+            }
+        }
+        result = negative ? -result : result;
+        if (result > Integer.MAX_VALUE) {
+            throw invalidNumber(field);
+        }
+        return (int) result;
+    }
+
+    private SpriteUtilsException invalidNumber(int field) {
+        String value = new String(buffer, fieldStart[field], fieldEnd[field] - fieldStart[field], StandardCharsets.UTF_8);
+        return new SpriteUtilsException("Invalid number \"" + value + "\" in column " + (field + 1) + " of line " + lineNumber + " of file " + file.getAbsolutePath());
+    }
+
+    /**
+     * Open addressing table of already created texts, so that a text is
+     * created only the first time its bytes are seen. Once the table is full,
+     * new texts are no longer remembered to keep the memory bounded.
+     */
+    private static class StringCache {
+
+        private static final int MAX_SIZE = 64 * 1024;
+        private byte[][] keys = new byte[256][];
+        private String[] values = new String[256];
+        private int size;
+
+        String get(byte[] bytes, int from, int to) {
+            if (from == to) {
+                return "";
+            }
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = keys.length - 1;
+            int index = (hash ^ (hash >>> 16)) & mask;
+            while (keys[index] != null) {
+                if (Arrays.equals(keys[index], 0, keys[index].length, bytes, from, to)) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            if (size >= MAX_SIZE) {
+                return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            }
+            byte[] key = Arrays.copyOfRange(bytes, from, to);
+            String value = new String(key, StandardCharsets.UTF_8);
+            keys[index] = key;
+            values[index] = value;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+            return value;
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                byte[] key = oldKeys[i];
+                if (key == null) {
+                    continue;
+                }
+                int hash = 1;
+                for (byte b : key) {
+                    hash = 31 * hash + b;
+                }
+                int index = (hash ^ (hash >>> 16)) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
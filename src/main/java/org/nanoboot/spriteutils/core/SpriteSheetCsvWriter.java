@@ -0,0 +1,199 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of spritesheet.csv rows.
+ *
+ * The fields are appended straight into one reusable byte buffer, numbers are
+ * written digit by digit and ASCII texts character by character, so no
+ * strings are created per row. The buffer is written to the channel whenever
+ * it is full and on {@link #flush()}. The channel is not closed by the
+ * writer. Instances are not thread-safe.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class SpriteSheetCsvWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte SEPARATOR = ';';
+    private static final byte NEW_LINE = '\n';
+    private static final byte MINUS = '-';
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    //Enough for Integer.MIN_VALUE
+    private static final int MAX_INT_LENGTH = 11;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+
+    public SpriteSheetCsvWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes the text followed by a new line.
+     *
+     * @param line line, for example the header
+     * @throws IOException if writing failed
+     */
+    public void writeLine(String line) throws IOException {
+        appendText(line);
+        appendByte(NEW_LINE);
+    }
+
+    /**
+     * Writes the row in the same format as {@link SpriteSheetRow#toCsvLine()}
+     * followed by a new line.
+     *
+     * @param row row
+     * @throws IOException if writing failed
+     */
+    public void writeRow(SpriteSheetRow row) throws IOException {
+        writeRow(row.file, row.group, row.numberInGroup, row.row, row.column, row.x, row.y,
+                row.width, row.height, row.notes, row.tags, row.numberPerSheet);
+    }
+
+    /**
+     * Writes the row of the index in the same format as
+     * {@link SpriteSheetRow#toCsvLine()} followed by a new line.
+     *
+     * @param index index
+     * @param i index of the row
+     * @throws IOException if writing failed
+     */
+    public void writeRow(SpriteIndex index, int i) throws IOException {
+        writeRow(index.getFile(i), index.getGroup(i), index.getNumberInGroup(i), index.getRow(i),
+                index.getColumn(i), index.getX(i), index.getY(i), index.getWidth(i), index.getHeight(i),
+                index.getNotes(i), index.getTags(i), index.getNumberPerSheet(i));
+    }
+
+    private void writeRow(String file, String group, int numberInGroup, int row, int column, int x, int y,
+            int width, int height, String notes, String tags, int numberPerSheet) throws IOException {
+        appendText(file);
+        appendByte(SEPARATOR);
+        appendText(group);
+        appendByte(SEPARATOR);
+        appendInt(numberInGroup);
+        appendByte(SEPARATOR);
+        appendInt(row);
+        appendByte(SEPARATOR);
+        appendInt(column);
+        appendByte(SEPARATOR);
+        appendInt(x);
+        appendByte(SEPARATOR);
+        appendInt(y);
+        appendByte(SEPARATOR);
+        appendInt(width);
+        appendByte(SEPARATOR);
+        appendInt(height);
+        appendByte(SEPARATOR);
+        appendText(notes);
+        appendByte(SEPARATOR);
+        appendText(tags);
+        appendByte(SEPARATOR);
+        appendInt(numberPerSheet);
+        appendByte(NEW_LINE);
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     *
+     * @throws IOException if writing failed
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void appendByte(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+    }
+
+    private void appendInt(int value) throws IOException {
+        if (buffer.remaining() < MAX_INT_LENGTH) {
+            flush();
+        }
+        int position = buffer.position();
+        if (value < 0) {
+            bytes[position++] = MINUS;
+        } else {
+            value = -value;
+        }
+        //Digits are computed from the negative value, which covers Integer.MIN_VALUE too.
+        int end = position + digitCount(value);
+        int i = end;
+        do {
+            bytes[--i] = (byte) ('0' - (value % 10));
+            value = value / 10;
+        } while (value != 0);
+        buffer.position(end);
+    }
+
+    private static int digitCount(int negativeValue) {
+        int count = 1;
+        while (negativeValue <= -10) {
+            negativeValue = negativeValue / 10;
+            count++;
+        }
+        return count;
+    }
+
+    private void appendText(String text) throws IOException {
+        if (text == null) {
+            appendBytes(NULL);
+            return;
+        }
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch >= 0x80) {
+                appendBytes(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            appendByte((byte) ch);
+        }
+    }
+
+    private void appendBytes(byte[] array) throws IOException {
+        if (array.length > buffer.remaining()) {
+            flush();
+        }
+        if (array.length > buffer.remaining()) {
+            ByteBuffer wrapped = ByteBuffer.wrap(array);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+            return;
+        }
+        buffer.put(array);
+    }
+}
@@ -5,10 +5,6 @@
 package org.nanoboot.spriteutils.core;
 
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import lombok.Data;
 import lombok.ToString;
 
@@ -33,6 +29,10 @@ public class SpriteSheetRow {
     String tags;
     int numberPerSheet;
 
+    SpriteSheetRow() {
+        //Used by SpriteSheetCsvParser, which sets the fields directly.
+    }
+
     public SpriteSheetRow(String csvLine) {
         String[] csvColumn = csvLine.split(";");
         int i = 0;
@@ -59,21 +59,20 @@ public class SpriteSheetRow {
     private static final String __ = "__";
 
     public String toCsvLine() {
-        List<String> l = Stream.of(
-                file,
-                group,
-                String.valueOf(numberInGroup),
-                String.valueOf(row),
-                String.valueOf(column),
-                String.valueOf(x),
-                String.valueOf(y),
-                String.valueOf(width),
-                String.valueOf(height),
-                notes,
-                tags,
-                String.valueOf(numberPerSheet)).toList();
-        return l.stream().collect(Collectors.joining(";"));
-
+        return new StringBuilder(64)
+                .append(file).append(';')
+                .append(group).append(';')
+                .append(numberInGroup).append(';')
+                .append(row).append(';')
+                .append(column).append(';')
+                .append(x).append(';')
+                .append(y).append(';')
+                .append(width).append(';')
+                .append(height).append(';')
+                .append(notes).append(';')
+                .append(tags).append(';')
+                .append(numberPerSheet)
+                .toString();
     }
 
 }
@@ -0,0 +1,238 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Packed static R-tree over the sprite rectangles of one file, which finds
+ * the sprites at a pixel or intersecting a region in logarithmic time.
+ *
+ * The sprites are ordered by the Sort-Tile-Recursive algorithm (vertical
+ * slices sorted by x, sprites in a slice sorted by y) and every
+ * {@link #NODE_CAPACITY} consecutive entries of a level are covered by one
+ * node of the next level. All levels are stored in flat arrays, the bounds
+ * are half-open, so sprites touching each other do not overlap and empty
+ * sprites are never found.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class SpriteSpatialIndex {
+
+    private static final int NODE_CAPACITY = 16;
+
+    private final List<SpriteSheetRow> rows;
+    /**
+     * Row index of every leaf entry.
+     */
+    private final int[] items;
+    private final int[] minX;
+    private final int[] minY;
+    private final int[] maxX;
+    private final int[] maxY;
+    /**
+     * Start of every level in the bound arrays, the last value is the size of
+     * the arrays.
+     */
+    private final int[] levelStarts;
+
+    /**
+     * @param rows resolved rows of one file
+     */
+    public SpriteSpatialIndex(List<SpriteSheetRow> rows) {
+        this.rows = new ArrayList<>(rows);
+        int n = this.rows.size();
+        this.items = sortTileRecursive(this.rows);
+
+        List<Integer> starts = new ArrayList<>();
+        int total = 0;
+        int levelSize = n;
+        do {
+            starts.add(total);
+            total = total + levelSize;
+            levelSize = (levelSize + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        } while (starts.size() == 1 || total - starts.get(starts.size() - 1) > 1);
+        starts.add(total);
+        this.levelStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+
+        minX = new int[total];
+        minY = new int[total];
+        maxX = new int[total];
+        maxY = new int[total];
+        for (int e = 0; e < n; e++) {
+            SpriteSheetRow r = this.rows.get(items[e]);
+            minX[e] = r.getX();
+            minY[e] = r.getY();
+            maxX[e] = r.getX() + r.getWidth();
+            maxY[e] = r.getY() + r.getHeight();
+        }
+        for (int level = 1; level < levelStarts.length - 1; level++) {
+            int childStart = levelStarts[level - 1];
+            int childEnd = levelStarts[level];
+            for (int node = levelStarts[level]; node < levelStarts[level + 1]; node++) {
+                int from = childStart + (node - levelStarts[level]) * NODE_CAPACITY;
+                int to = Math.min(from + NODE_CAPACITY, childEnd);
+                minX[node] = Integer.MAX_VALUE;
+                minY[node] = Integer.MAX_VALUE;
+                maxX[node] = Integer.MIN_VALUE;
+                maxY[node] = Integer.MIN_VALUE;
+                for (int c = from; c < to; c++) {
+                    minX[node] = Math.min(minX[node], minX[c]);
+                    minY[node] = Math.min(minY[node], minY[c]);
+                    maxX[node] = Math.max(maxX[node], maxX[c]);
+                    maxY[node] = Math.max(maxY[node], maxY[c]);
+                }
+            }
+        }
+    }
+
+    private static int[] sortTileRecursive(List<SpriteSheetRow> rows) {
+        int n = rows.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> centerX2(rows.get(i))));
+        int leaves = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = Math.max(1, (int) Math.ceil(Math.sqrt(leaves)));
+        int sliceSize = slices * NODE_CAPACITY;
+        for (int from = 0; from < n; from = from + sliceSize) {
+            Arrays.sort(order, from, Math.min(from + sliceSize, n), Comparator.comparingLong(i -> centerY2(rows.get(i))));
+        }
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static long centerX2(SpriteSheetRow r) {
+        return 2L * r.getX() + r.getWidth();
+    }
+
+    private static long centerY2(SpriteSheetRow r) {
+        return 2L * r.getY() + r.getHeight();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @param x x of the pixel
+     * @param y y of the pixel
+     * @return sprites containing the pixel in the order of the rows
+     */
+    public List<SpriteSheetRow> findAt(int x, int y) {
+        return findIntersecting(x, y, 1, 1);
+    }
+
+    /**
+     * @param x x of the region
+     * @param y y of the region
+     * @param width width of the region
+     * @param height height of the region
+     * @return sprites intersecting the region in the order of the rows
+     */
+    public List<SpriteSheetRow> findIntersecting(int x, int y, int width, int height) {
+        List<Integer> found = new ArrayList<>();
+        search(x, y, x + width, y + height, found::add);
+        found.sort(null);
+        List<SpriteSheetRow> result = new ArrayList<>(found.size());
+        found.forEach(i -> result.add(rows.get(i)));
+        return result;
+    }
+
+    /**
+     * Finds all pairs of overlapping sprites by querying the tree with every
+     * sprite.
+     *
+     * @return pairs of overlapping sprites, the first one of every pair is
+     * the one described earlier
+     */
+    public List<SpriteSheetRow[]> findOverlaps() {
+        List<int[]> pairs = new ArrayList<>();
+        for (int e = 0; e < items.length; e++) {
+            final int i = items[e];
+            search(minX[e], minY[e], maxX[e], maxY[e], j -> {
+                if (j > i) {
+                    pairs.add(new int[]{i, j});
+                }
+            });
+        }
+        pairs.sort(Comparator.<int[]>comparingInt(p -> p[0]).thenComparingInt(p -> p[1]));
+        List<SpriteSheetRow[]> result = new ArrayList<>(pairs.size());
+        pairs.forEach(p -> result.add(new SpriteSheetRow[]{rows.get(p[0]), rows.get(p[1])}));
+        return result;
+    }
+
+    /**
+     * @param width width of the image
+     * @param height height of the image
+     * @return sprites, which are not completely inside of the image, in the
+     * order of the rows
+     */
+    public List<SpriteSheetRow> findOutOfBounds(int width, int height) {
+        List<SpriteSheetRow> result = new ArrayList<>();
+        for (SpriteSheetRow r : rows) {
+            if (r.getX() < 0 || r.getY() < 0 || r.getX() + r.getWidth() > width || r.getY() + r.getHeight() > height) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes the row index of every sprite intersecting the half-open region
+     * to the consumer.
+     */
+    private void search(int x1, int y1, int x2, int y2, IntConsumer consumer) {
+        if (items.length == 0 || x1 >= x2 || y1 >= y2) {
+            return;
+        }
+        int[] stack = new int[(levelStarts.length - 1) * NODE_CAPACITY + 1];
+        int[] stackLevels = new int[stack.length];
+        int top = 0;
+        stack[top] = levelStarts[levelStarts.length - 2];
+        stackLevels[top] = levelStarts.length - 2;
+        top++;
+        while (top > 0) {
+            top--;
+            int node = stack[top];
+            int level = stackLevels[top];
+            if (minX[node] >= x2 || x1 >= maxX[node] || minY[node] >= y2 || y1 >= maxY[node]) {
+                continue;
+            }
+            if (level == 0) {
+                if (minX[node] < maxX[node] && minY[node] < maxY[node]) {
+                    consumer.accept(items[node]);
+                }
+                continue;
+            }
+            int from = levelStarts[level - 1] + (node - levelStarts[level]) * NODE_CAPACITY;
+            int to = Math.min(from + NODE_CAPACITY, levelStarts[level]);
+            for (int c = from; c < to; c++) {
+                stack[top] = c;
+                stackLevels[top] = level - 1;
+                top++;
+            }
+        }
+    }
+}
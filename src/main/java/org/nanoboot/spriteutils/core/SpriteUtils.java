@@ -19,12 +19,20 @@
 
 package org.nanoboot.spriteutils.core;
 
+import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.commands.DedupeCommand;
 import org.nanoboot.spriteutils.commands.DrawCommand;
+import org.nanoboot.spriteutils.commands.ExtractCommand;
+import org.nanoboot.spriteutils.commands.GifsCommand;
 import org.nanoboot.spriteutils.commands.HelpCommand;
+import org.nanoboot.spriteutils.commands.LocateCommand;
+import org.nanoboot.spriteutils.commands.PackCommand;
+import org.nanoboot.spriteutils.commands.RestoreCommand;
+import org.nanoboot.spriteutils.commands.ServeCommand;
 import org.nanoboot.spriteutils.commands.VersionCommand;
 
 /**
@@ -38,16 +46,27 @@ public class SpriteUtils {
     private final Set<Command> commandImplementations;
     public SpriteUtils() {
         commandImplementations = new HashSet<>();
+        commandImplementations.add(new DedupeCommand());
         commandImplementations.add(new DrawCommand());
+        commandImplementations.add(new ExtractCommand());
+        commandImplementations.add(new GifsCommand());
         commandImplementations.add(new HelpCommand());
+        commandImplementations.add(new LocateCommand());
+        commandImplementations.add(new PackCommand());
+        commandImplementations.add(new RestoreCommand());
+        commandImplementations.add(new ServeCommand(this));
         commandImplementations.add(new VersionCommand());
     }
        
-    public void run(String[] args) {
-        run(new SpriteUtilsArgs(args));
+    public String run(String[] args) {
+        return run(new SpriteUtilsArgs(args));
     }
     
-    public void run(SpriteUtilsArgs spriteUtilsArgs) {
+    /**
+     * @param spriteUtilsArgs arguments
+     * @return result of the command
+     */
+    public String run(SpriteUtilsArgs spriteUtilsArgs) {
         String command = spriteUtilsArgs.getCommand();
         Command foundCommand = null;
         for(Command e:commandImplementations) {
@@ -63,7 +82,21 @@ public class SpriteUtils {
             new HelpCommand().run(spriteUtilsArgs);
             throw new SpriteUtilsException(msg);
         }
-        foundCommand.run(spriteUtilsArgs);
-        
+        if (!spriteUtilsArgs.hasArgument(Metrics.METRICS)) {
+            return foundCommand.run(spriteUtilsArgs);
+        }
+        String reportPath = spriteUtilsArgs.getArgument(Metrics.METRICS);
+        if (reportPath == null || reportPath.isBlank()) {
+            throw new SpriteUtilsException("Option " + Metrics.METRICS + " requires a file, for example " + Metrics.METRICS + "=metrics.json");
+        }
+        File report = new File(reportPath);
+        Metrics metrics = Metrics.begin();
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.COMMAND)) {
+            return foundCommand.run(spriteUtilsArgs);
+        } finally {
+            metrics.end();
+            metrics.writeReport(report, command);
+            LOG.info("Metrics were written to {}", report.getAbsolutePath());
+        }
     }
 }
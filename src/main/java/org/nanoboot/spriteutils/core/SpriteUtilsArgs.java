@@ -18,9 +18,12 @@
 ///////////////////////////////////////////////////////////////////////////////////////////////
 package org.nanoboot.spriteutils.core;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  *
@@ -28,6 +31,7 @@ import lombok.Getter;
  */
 public class SpriteUtilsArgs {
 
+    private static final Logger LOG = LogManager.getLogger(SpriteUtilsArgs.class);
     @Getter
     private final String command;
     private final Map<String, String> internalMap = new HashMap<>();
@@ -65,8 +69,8 @@ public class SpriteUtilsArgs {
                 String[] keyValue = arg.split("=", 2);
                 internalMap.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : null);
             }
-            for (String key : internalMap.keySet()) {
-                System.out.println("Found argument: " + key + "(=)" + internalMap.get(key));
+            if (LOG.isTraceEnabled()) {
+                internalMap.forEach((key, value) -> LOG.trace("Found argument: {}(=){}", key, value));
             }
 
         }
@@ -83,6 +87,49 @@ public class SpriteUtilsArgs {
     public String getArgument(String arg) {
         return internalMap.get(arg);
     }
+
+    public Map<String, String> getArguments() {
+        return Collections.unmodifiableMap(internalMap);
+    }
+
+    /**
+     * @param arg option name
+     * @param min min allowed value
+     * @param max max allowed value
+     * @return value of the option
+     * @throws SpriteUtilsException if the option is missing, is not a number
+     * or is out of the range
+     */
+    public int getIntArgument(String arg, int min, int max) {
+        String value = getArgument(arg);
+        if (value == null || value.isBlank()) {
+            throw new SpriteUtilsException("Option " + arg + " is required");
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new SpriteUtilsException("Option " + arg + " must be a number, but is " + value);
+        }
+        if (result < min || result > max) {
+            throw new SpriteUtilsException("Option " + arg + " must be between " + min + " and " + max + ", but is " + result);
+        }
+        return result;
+    }
+
+    /**
+     * @param arg option name
+     * @param defaultValue value used, if the option is missing or blank
+     * @param min min allowed value
+     * @param max max allowed value
+     * @return value of the option
+     * @throws SpriteUtilsException if the option is not a number or is out of
+     * the range
+     */
+    public int getIntArgument(String arg, int defaultValue, int min, int max) {
+        String value = getArgument(arg);
+        return value == null || value.isBlank() ? defaultValue : getIntArgument(arg, min, max);
+    }
     public boolean isVerboseLoggingEnabled() {
         return hasArgument("verbose")&&getArgument("verbose").equals("true");
     }
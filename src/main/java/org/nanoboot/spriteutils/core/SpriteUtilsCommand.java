@@ -24,5 +24,5 @@ package org.nanoboot.spriteutils.core;
 * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
  */
 public enum SpriteUtilsCommand {
-    DRAW, RESTORE, EXTRACT, GIFS, HELP, VERSION;
+    DRAW, RESTORE, EXTRACT, GIFS, PACK, DEDUPE, LOCATE, SERVE, HELP, VERSION;
 }
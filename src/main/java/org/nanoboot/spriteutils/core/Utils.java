@@ -19,7 +19,6 @@
 package org.nanoboot.spriteutils.core;
 
 import dev.mccue.guava.hash.Hashing;
-import dev.mccue.guava.io.Files;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
@@ -27,13 +26,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
-import java.util.ArrayList;
 import java.util.Base64;
-import java.util.List;
+import java.util.HexFormat;
 
 /**
  *
@@ -42,27 +48,18 @@ import java.util.List;
 public class Utils {
 
     private static final String UNDERSCORE = "_";
+    private static final long HASH_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final long MAPPED_HASHING_THRESHOLD = 1024 * 1024;
+    /**
+     * Masked by the umask like the permissions of any other new file,
+     * temporary files would be accessible by the owner only.
+     */
+    private static final String NEW_FILE_PERMISSIONS = "rw-rw-rw-";
 
     private Utils() {
         //Not meant to be instantiated.
     }
 
-    public static List<File> listAllFilesInDir(File dir) {
-        return listAllFilesInDir(dir, new ArrayList<>());
-    }
-
-    private static List<File> listAllFilesInDir(File dir, List<File> files) {
-        files.add(dir);
-        for (File f : dir.listFiles()) {
-            if (f.isDirectory()) {
-                listAllFilesInDir(f, files);
-            } else {
-                files.add(f);
-            }
-        }
-        return files;
-    }
-
     public static void copyFile(File originalFile, File copiedFile) throws SpriteUtilsException {
         Path originalPath = originalFile.toPath();
         Path copied = copiedFile.toPath();
@@ -75,6 +72,75 @@ public class Utils {
         }
     }
 
+    /**
+     * Copies the file using FileChannel.transferTo, which lets the operating
+     * system copy the data without passing it through the Java heap.
+     *
+     * @param originalFile file to copy
+     * @param copiedFile target file, which is overwritten, if it exists
+     * @throws SpriteUtilsException if copying failed
+     */
+    public static void transferFile(File originalFile, File copiedFile) throws SpriteUtilsException {
+        try (FileChannel in = FileChannel.open(originalFile.toPath(), StandardOpenOption.READ); FileChannel out = FileChannel.open(copiedFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                position = position + transferred;
+            }
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Copying file failed: " + originalFile.getAbsolutePath() + " " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Writes the file through a new temporary file in the same directory,
+     * which is then moved over the file, so readers in this or another
+     * process see either the old or the complete new content and a memory
+     * mapped file is never truncated. The name of the temporary file is
+     * unique, so more processes can write the same file at the same time,
+     * the last move wins.
+     *
+     * @param file target file
+     * @param writer writes the content to the temporary file
+     * @throws IOException if writing or moving failed, the temporary file is
+     * deleted then
+     */
+    public static void writeAtomically(File file, ContentWriter writer) throws IOException {
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        Path temp = directory.getFileSystem().supportedFileAttributeViews().contains("posix")
+                ? java.nio.file.Files.createTempFile(directory, file.getName(), ".tmp",
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(NEW_FILE_PERMISSIONS)))
+                : java.nio.file.Files.createTempFile(directory, file.getName(), ".tmp");
+        try {
+            writer.write(temp.toFile());
+            try {
+                java.nio.file.Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                java.nio.file.Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException ex) {
+            temp.toFile().delete();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        /**
+         * @param file file to write to, which exists and is empty
+         * @throws IOException if writing failed
+         */
+        void write(File file) throws IOException;
+    }
+
     public static void writeTextToFile(String text, File file) {
         FileWriter fileWriter;
         try {
@@ -124,24 +190,52 @@ public class Utils {
     }
 
     public static String calculateSHA512Hash(File file) {
-        try {
-            return Files.hash(file, Hashing.sha512()).toString();
-        } catch (IOException ex) {
-            System.err.println(ex.getMessage());
-            throw new SpriteUtilsException(ex);
-        }
+        return hashFile(file, "SHA-512");
     }
 
     public static String calculateSHA256Hash(File file) {
         if(file.isDirectory()) {return "";}
+        return hashFile(file, "SHA-256");
+    }
+
+    /**
+     * Hashes the file in chunks of {@link #HASH_CHUNK_SIZE} bytes. Large files
+     * are memory-mapped, so their content is not copied through a stream.
+     *
+     * @param file file
+     * @param algorithm algorithm of MessageDigest
+     * @return hash as lower case hexadecimal string
+     */
+    private static String hashFile(File file, String algorithm) {
+        MessageDigest digest;
         try {
-            return Files.hash(file, Hashing.sha256()).toString();
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new SpriteUtilsException("Hash algorithm is not supported: " + algorithm, ex);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAPPED_HASHING_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(size, 1));
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            } else {
+                for (long position = 0; position < size; position = position + HASH_CHUNK_SIZE) {
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_CHUNK_SIZE, size - position)));
+                }
+            }
         } catch (IOException ex) {
-            System.err.println(ex.getMessage());
-            throw new SpriteUtilsException(ex);
+            throw new SpriteUtilsException("Hashing file failed: " + file.getAbsolutePath() + " " + ex.getMessage(), ex);
         }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
+    public static String calculateSHA256Hash(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8).toString();
+    }
 
     public static String encodeBase64(String s) {
         return Base64.getEncoder().encodeToString(s.getBytes());
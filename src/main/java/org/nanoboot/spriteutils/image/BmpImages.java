@@ -0,0 +1,222 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import net.sf.image4j.codec.bmp.BMPDecoder;
+import net.sf.image4j.codec.bmp.BMPEncoder;
+import org.nanoboot.spriteutils.core.Backups;
+import org.nanoboot.spriteutils.core.Metrics;
+import org.nanoboot.spriteutils.core.SpriteSheetRow;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+import org.nanoboot.spriteutils.core.Utils;
+
+/**
+ * Reading and writing of sprite sheet images (BMP and BLP files, BLP files are
+ * BMP files with another extension).
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class BmpImages {
+
+    public static final String BMP = "bmp";
+    public static final String PNG = "png";
+
+    private BmpImages() {
+        //Not meant to be instantiated.
+    }
+
+    /**
+     * Returns the decoded image from {@link DecodedImageCache}, the image is
+     * decoded only, if it is not cached yet.
+     *
+     * @param file file
+     * @return shared image, which must not be modified
+     */
+    public static BufferedImage read(File file) {
+        return DecodedImageCache.getInstance().get(file, BmpImages::decode);
+    }
+
+    /**
+     * Reads the original image, which is the backup of the file, if the file
+     * was already changed by sprite-utils, otherwise the file itself.
+     *
+     * @param file file
+     * @return shared image, which must not be modified
+     */
+    public static BufferedImage readOriginal(File file) {
+        File backupFile = Backups.getBackupFile(file);
+        return read(backupFile.exists() ? backupFile : file);
+    }
+
+    /**
+     * Decodes the image without using the cache.
+     *
+     * @param file file
+     * @return new image
+     */
+    public static BufferedImage decode(File file) {
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.DECODE)) {
+            BufferedImage image = MappedBmpDecoder.decode(file);
+            if (image == null) {
+                image = BMPDecoder.read(file);
+            }
+            timer.addBytesRead(file.length()).addPixels((long) image.getWidth() * image.getHeight());
+            return image;
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Reading image failed: " + file.getAbsolutePath() + " " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @param image image
+     * @return modifiable copy of the image with the same colour model
+     */
+    public static BufferedImage copy(BufferedImage image) {
+        ColorModel colorModel = image.getColorModel();
+        WritableRaster raster;
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        if (dataBuffer instanceof MappedBmpDecoder.MappedDataBuffer) {
+            byte[] pixels = new byte[dataBuffer.getSize()];
+            ((MappedBmpDecoder.MappedDataBuffer) dataBuffer).copyTo(pixels);
+            raster = Raster.createWritableRaster(image.getRaster().getSampleModel(), new DataBufferByte(pixels, pixels.length), null);
+        } else {
+            raster = image.copyData(null);
+        }
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Writes the image as BMP (using image4j) or in any other format supported
+     * by ImageIO.
+     *
+     * @param image image
+     * @param format format, for example bmp or png
+     * @param file target file
+     */
+    public static void write(BufferedImage image, String format, File file) {
+        writeBytes(encode(image, format), file);
+    }
+
+    /**
+     * Encodes the image as BMP (using image4j) or in any other format
+     * supported by ImageIO.
+     *
+     * @param image image
+     * @param format format, for example bmp or png
+     * @return encoded image
+     */
+    public static byte[] encode(BufferedImage image, String format) {
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.ENCODE)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (BMP.equals(format)) {
+                BMPEncoder.write(image, out);
+            } else {
+                try (ImageOutputStream imageOut = toImageOutputStream(out)) {
+                    if (!ImageIO.write(image, format, imageOut)) {
+                        throw new SpriteUtilsException("Image format is not supported: " + format);
+                    }
+                }
+            }
+            timer.addPixels((long) image.getWidth() * image.getHeight());
+            return out.toByteArray();
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Encoding image failed: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Wraps the stream, so it can be written by an ImageIO writer. The data
+     * are cached in memory, ImageIO.createImageOutputStream would cache them
+     * in a temporary file.
+     *
+     * @param out stream
+     * @return image output stream, which must be closed or flushed to write
+     * the data to the stream
+     */
+    static ImageOutputStream toImageOutputStream(OutputStream out) {
+        return new MemoryCacheImageOutputStream(out);
+    }
+
+    /**
+     * Writes the encoded images to their files, missing directories are
+     * created.
+     *
+     * @param encoded encoded images by their target files
+     * @return number of written files
+     */
+    public static int writeAll(Map<File, byte[]> encoded) {
+        for (Map.Entry<File, byte[]> e : encoded.entrySet()) {
+            File directory = e.getKey().getAbsoluteFile().getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new SpriteUtilsException("Creating directory failed: " + directory.getAbsolutePath());
+            }
+            writeBytes(e.getValue(), e.getKey());
+        }
+        return encoded.size();
+    }
+
+    /**
+     * Writes the encoded image to the file.
+     *
+     * @param bytes encoded image
+     * @param file target file
+     */
+    public static void writeBytes(byte[] bytes, File file) {
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.WRITE)) {
+            Utils.writeAtomically(file, temp -> Files.write(temp.toPath(), bytes));
+            timer.addBytesWritten(bytes.length);
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing image failed: " + file.getAbsolutePath() + " " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the part of the image covered by the sprite. The returned image
+     * shares its pixels with the given image, nothing is copied.
+     *
+     * @param image sprite sheet image
+     * @param row sprite
+     * @return sprite image or null, if the sprite lies outside of the image
+     */
+    public static BufferedImage getSprite(BufferedImage image, SpriteSheetRow row) {
+        Rectangle bounds = new Rectangle(row.getX(), row.getY(), row.getWidth(), row.getHeight())
+                .intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        return image.getSubimage(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+}
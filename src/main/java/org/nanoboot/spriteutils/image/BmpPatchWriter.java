@@ -0,0 +1,258 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.image;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.Metrics;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+import org.nanoboot.spriteutils.core.Utils;
+
+/**
+ * Writes a changed image back to its BMP file by patching only the changed
+ * scanlines using positional writes. The headers and the palette of the file
+ * are kept byte for byte.
+ *
+ * The target file is expected to be a copy of the original file with some
+ * rows changed by a previous run. The rows changed by the last write are
+ * remembered in {target}.patched together with the size and the modification
+ * time of the target. Only the ranges of the rows dirty now or patched by the
+ * last write are written: dirty rows are encoded from the image, the other
+ * ones are restored from the original file. If the target was changed by
+ * something else, it is written again from the original file.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class BmpPatchWriter {
+
+    private static final Logger LOG = LogManager.getLogger(BmpPatchWriter.class);
+    static final String PATCHED_ROWS_SUFFIX = ".patched";
+    private static final int MAX_RUN_ROWS = 64;
+
+    private BmpPatchWriter() {
+        //Not meant to be instantiated.
+    }
+
+    /**
+     * Writes the image to the target file.
+     *
+     * @param target file to write to
+     * @param original original file, the image was decoded from
+     * @param image image with the same size and format as the original file
+     * @param dirtyRows rows of the image, which were changed
+     * @return number of written bytes
+     */
+    public static long write(File target, File original, BufferedImage image, BitSet dirtyRows) {
+        try (Metrics.Timer timer = Metrics.start(Metrics.Stage.WRITE)) {
+            long written = writeOrPatch(target, original, image, dirtyRows);
+            timer.addBytesWritten(written);
+            return written;
+        }
+    }
+
+    private static long writeOrPatch(File target, File original, BufferedImage image, BitSet dirtyRows) {
+        try (FileChannel originalChannel = FileChannel.open(original.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer originalBuffer = originalChannel.map(FileChannel.MapMode.READ_ONLY, 0, originalChannel.size());
+            MappedBmpDecoder.BmpHeader header = MappedBmpDecoder.readHeader(originalBuffer);
+            if (header == null || !isCompatible(header, image)) {
+                LOG.debug("Image cannot be patched, it will be written again: {}", target.getAbsolutePath());
+                getPatchedRowsFile(target).delete();
+                BmpImages.write(image, BmpImages.BMP, target);
+                return target.length();
+            }
+            BitSet patchedRows = readPatchedRows(target);
+            long written;
+            if (patchedRows == null || !hasSameHeader(target, originalBuffer, header)) {
+                written = rewrite(target, original, originalBuffer, header, image, dirtyRows);
+            } else {
+                patchedRows.or(dirtyRows);
+                written = patch(target, originalBuffer, header, image, patchedRows, dirtyRows);
+            }
+            writePatchedRows(target, dirtyRows);
+            return written;
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing image failed: " + target.getAbsolutePath() + " " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Patches a copy of the original file and moves it over the target. The
+     * target is not truncated in place, because it may be memory mapped.
+     */
+    private static long rewrite(File target, File original, ByteBuffer originalBuffer, MappedBmpDecoder.BmpHeader header,
+            BufferedImage image, BitSet dirtyRows) throws IOException {
+        long[] written = new long[1];
+        Utils.writeAtomically(target, temp -> {
+            Utils.transferFile(original, temp);
+            written[0] = temp.length() + patch(temp, originalBuffer, header, image, dirtyRows, dirtyRows);
+        });
+        return written[0];
+    }
+
+    private static boolean isCompatible(MappedBmpDecoder.BmpHeader header, BufferedImage image) {
+        if (image.getWidth() != header.getWidth() || image.getHeight() != header.getHeight()) {
+            return false;
+        }
+        if (header.getBitCount() == 8) {
+            return image.getRaster().getNumBands() == 1 && image.getColorModel() instanceof IndexColorModel
+                    && ((IndexColorModel) image.getColorModel()).getMapSize() == header.getPaletteSize();
+        }
+        return image.getRaster().getNumBands() == 3 && image.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_RGB;
+    }
+
+    private static boolean hasSameHeader(File target, ByteBuffer original, MappedBmpDecoder.BmpHeader header) throws IOException {
+        if (!target.exists() || target.length() != original.limit()) {
+            return false;
+        }
+        ByteBuffer targetHeader = ByteBuffer.allocate(header.getPixelOffset());
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.READ)) {
+            while (targetHeader.hasRemaining() && channel.read(targetHeader, targetHeader.position()) > 0) {
+                //Reading until the header is complete.
+            }
+        }
+        targetHeader.flip();
+        return targetHeader.mismatch(original.slice(0, header.getPixelOffset())) == -1;
+    }
+
+    /**
+     * Writes the ranges of the rows. Dirty rows are encoded from the image,
+     * the other rows are copied from the original file.
+     *
+     * @return number of written bytes
+     */
+    private static long patch(File target, ByteBuffer original, MappedBmpDecoder.BmpHeader header, BufferedImage image,
+            BitSet rows, BitSet dirtyRows) throws IOException {
+        int stride = header.getStride();
+        int height = header.getHeight();
+        Raster raster = image.getRaster();
+        int[] samples = new int[header.getWidth() * raster.getNumBands()];
+        byte[] row = new byte[stride];
+        ByteBuffer run = ByteBuffer.allocate(stride * Math.min(height, MAX_RUN_ROWS));
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            for (int from = rows.nextSetBit(0); from >= 0 && from < height; from = rows.nextSetBit(from)) {
+                int to = Math.min(rows.nextClearBit(from), height);
+                for (int runFrom = from; runFrom < to; runFrom = runFrom + MAX_RUN_ROWS) {
+                    int runTo = Math.min(runFrom + MAX_RUN_ROWS, to);
+                    //The rows of a run are adjacent in the file, in the reverse order, if the file is bottom-up.
+                    for (int i = runFrom; i < runTo; i++) {
+                        int y = header.isBottomUp() ? runTo - 1 - (i - runFrom) : i;
+                        original.get((int) header.getRowOffset(y), row);
+                        if (dirtyRows.get(y)) {
+                            encodeRow(raster, y, header.getBitCount(), samples, row);
+                        }
+                        run.put(row);
+                    }
+                    written += flush(channel, run, header.getRowOffset(header.isBottomUp() ? runTo - 1 : runFrom));
+                }
+                from = to;
+            }
+        }
+        LOG.debug("Patched {} bytes of {}", written, target.getAbsolutePath());
+        return written;
+    }
+
+    private static File getPatchedRowsFile(File target) {
+        return new File(target.getAbsolutePath() + PATCHED_ROWS_SUFFIX);
+    }
+
+    /**
+     * @return rows patched by the last write or null, if they are not known or
+     * the target was changed since then
+     */
+    private static BitSet readPatchedRows(File target) {
+        File file = getPatchedRowsFile(target);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readLong() != target.length() || in.readLong() != target.lastModified()) {
+                return null;
+            }
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return BitSet.valueOf(bytes);
+        } catch (IOException ex) {
+            LOG.debug("Patched rows are ignored: {} {}", file.getAbsolutePath(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private static void writePatchedRows(File target, BitSet rows) {
+        File file = getPatchedRowsFile(target);
+        byte[] bytes = rows.toByteArray();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeLong(target.length());
+            out.writeLong(target.lastModified());
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException ex) {
+            file.delete();
+            LOG.warn("Patched rows were not saved, the next write rewrites the file: {} {}", file.getAbsolutePath(), ex.getMessage());
+        }
+    }
+
+    private static void encodeRow(Raster raster, int y, int bitCount, int[] samples, byte[] row) {
+        raster.getPixels(0, y, raster.getWidth(), 1, samples);
+        if (bitCount == 8) {
+            for (int x = 0; x < samples.length; x++) {
+                row[x] = (byte) samples[x];
+            }
+        } else {
+            for (int i = 0; i < samples.length; i += 3) {
+                row[i] = (byte) samples[i + 2];
+                row[i + 1] = (byte) samples[i + 1];
+                row[i + 2] = (byte) samples[i];
+            }
+        }
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer run, long offset) throws IOException {
+        if (offset == -1 || run.position() == 0) {
+            run.clear();
+            return 0;
+        }
+        run.flip();
+        long written = run.remaining();
+        long position = offset;
+        while (run.hasRemaining()) {
+            position = position + channel.write(run, position);
+        }
+        run.clear();
+        return written;
+    }
+}
@@ -0,0 +1,177 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import lombok.Data;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+
+/**
+ * Cache of decoded images shared by all commands.
+ *
+ * Images are keyed by path, modification time and size of the file, so a
+ * changed file is decoded again. The cache is bounded by the total size of
+ * the pixel data, the least recently used images are evicted first. If more
+ * threads ask for the same image at the same time, it is decoded only once.
+ *
+ * Cached images are shared, they must not be modified (see
+ * {@link BmpImages#copy(BufferedImage)}).
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class DecodedImageCache {
+
+    private static final Logger LOG = LogManager.getLogger(DecodedImageCache.class);
+    private static final DecodedImageCache INSTANCE = new DecodedImageCache(Runtime.getRuntime().maxMemory() / 4);
+
+    private final long maxBytes;
+    private long bytes;
+    private final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Key> keysByPath = new HashMap<>();
+    private final Map<Key, FutureTask<BufferedImage>> loading = new HashMap<>();
+
+    public DecodedImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static DecodedImageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached image of the file or decodes it and caches it.
+     *
+     * @param file file
+     * @param decoder decodes the file, if it is not cached yet
+     * @return shared image, which must not be modified
+     */
+    public BufferedImage get(File file, Function<File, BufferedImage> decoder) {
+        Key key = new Key(file.getAbsolutePath(), file.lastModified(), file.length());
+        FutureTask<BufferedImage> task;
+        boolean owner = false;
+        synchronized (this) {
+            BufferedImage image = images.get(key);
+            if (image != null) {
+                return image;
+            }
+            task = loading.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> decoder.apply(file));
+                loading.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            task.run();
+        }
+        try {
+            BufferedImage image = task.get();
+            if (owner) {
+                put(key, image);
+            }
+            return image;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SpriteUtilsException) {
+                throw (SpriteUtilsException) cause;
+            }
+            throw new SpriteUtilsException("Reading image failed: " + file.getAbsolutePath() + " " + cause.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SpriteUtilsException("Reading image was interrupted: " + file.getAbsolutePath(), ex);
+        } finally {
+            if (owner) {
+                synchronized (this) {
+                    loading.remove(key);
+                }
+            }
+        }
+    }
+
+    private synchronized void put(Key key, BufferedImage image) {
+        long size = sizeOf(image);
+        if (size > maxBytes) {
+            LOG.debug("Image is too big to be cached: {}", key.getPath());
+            return;
+        }
+        Key oldKey = keysByPath.put(key.getPath(), key);
+        if (oldKey != null && !oldKey.equals(key)) {
+            remove(oldKey);
+        }
+        BufferedImage old = images.put(key, image);
+        if (old != null) {
+            bytes = bytes - sizeOf(old);
+        }
+        bytes = bytes + size;
+        Iterator<Map.Entry<Key, BufferedImage>> iterator = images.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, BufferedImage> eldest = iterator.next();
+            iterator.remove();
+            keysByPath.remove(eldest.getKey().getPath(), eldest.getKey());
+            bytes = bytes - sizeOf(eldest.getValue());
+            LOG.debug("Evicted image from cache: {}", eldest.getKey().getPath());
+        }
+    }
+
+    private void remove(Key key) {
+        BufferedImage removed = images.remove(key);
+        if (removed != null) {
+            bytes = bytes - sizeOf(removed);
+        }
+    }
+
+    public synchronized void clear() {
+        images.clear();
+        keysByPath.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    static long sizeOf(BufferedImage image) {
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+
+    @Data
+    private static class Key {
+
+        private final String path;
+        private final long lastModified;
+        private final long length;
+    }
+}
@@ -0,0 +1,145 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+
+/**
+ * Writes an endlessly looping animated GIF frame by frame using the sequence
+ * support of the ImageIO GIF writer, so only the current frame has to be in
+ * memory.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class GifSequenceWriter implements AutoCloseable {
+
+    private final String target;
+    private final ImageOutputStream output;
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private final String delay;
+    private boolean first = true;
+
+    /**
+     * @param file target file
+     * @param delayMillis delay between frames in milliseconds
+     */
+    public GifSequenceWriter(File file, int delayMillis) {
+        this(file.getAbsolutePath(), () -> {
+            file.delete();
+            return ImageIO.createImageOutputStream(file);
+        }, delayMillis);
+    }
+
+    /**
+     * @param outputStream target stream, which is not closed by this writer
+     * @param delayMillis delay between frames in milliseconds
+     */
+    public GifSequenceWriter(OutputStream outputStream, int delayMillis) {
+        this("stream", () -> BmpImages.toImageOutputStream(outputStream), delayMillis);
+    }
+
+    private GifSequenceWriter(String target, OutputOpener opener, int delayMillis) {
+        this.target = target;
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix("gif");
+        if (!writers.hasNext()) {
+            throw new SpriteUtilsException("No GIF writer is available");
+        }
+        writer = writers.next();
+        param = writer.getDefaultWriteParam();
+        delay = String.valueOf(Math.max(0, delayMillis / 10));
+        try {
+            output = opener.open();
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing image failed: " + target + " " + ex.getMessage());
+        }
+    }
+
+    public void writeFrame(BufferedImage frame) {
+        try {
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), param);
+            String format = metadata.getNativeMetadataFormatName();
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+            IIOMetadataNode graphicControl = getNode(root, "GraphicControlExtension");
+            graphicControl.setAttribute("disposalMethod", "restoreToBackgroundColor");
+            graphicControl.setAttribute("userInputFlag", "FALSE");
+            graphicControl.setAttribute("transparentColorFlag", "FALSE");
+            graphicControl.setAttribute("delayTime", delay);
+            graphicControl.setAttribute("transparentColorIndex", "0");
+
+            if (first) {
+                IIOMetadataNode applicationExtension = new IIOMetadataNode("ApplicationExtension");
+                applicationExtension.setAttribute("applicationID", "NETSCAPE");
+                applicationExtension.setAttribute("authenticationCode", "2.0");
+                //Sub-block 1, loop count 0 (forever)
+                applicationExtension.setUserObject(new byte[]{1, 0, 0});
+                getNode(root, "ApplicationExtensions").appendChild(applicationExtension);
+                first = false;
+            }
+            metadata.setFromTree(format, root);
+            writer.writeToSequence(new IIOImage(frame, null, metadata), param);
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing image failed: " + target + " " + ex.getMessage());
+        }
+    }
+
+    private static IIOMetadataNode getNode(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(name)) {
+                return (IIOMetadataNode) root.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+
+    @Override
+    public void close() {
+        try (output) {
+            writer.endWriteSequence();
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Writing image failed: " + target + " " + ex.getMessage());
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private interface OutputOpener {
+
+        ImageOutputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,219 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.image;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+
+/**
+ * Decoder of uncompressed 8-bit indexed and 24-bit BMP files, which maps the
+ * file into memory and creates the image raster directly over the mapped
+ * pixel array, so nothing is copied when the image is opened. Bottom-up and
+ * top-down row order is supported. The returned images are read-only.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class MappedBmpDecoder {
+
+    private static final int FILE_HEADER_SIZE = 14;
+    private static final int INFO_HEADER_MIN_SIZE = 40;
+    private static final int BI_RGB = 0;
+
+    private MappedBmpDecoder() {
+        //Not meant to be instantiated.
+    }
+
+    /**
+     * Reads the headers of a BMP file.
+     *
+     * @param buffer content of the file
+     * @return header or null, if the file is not an uncompressed 8-bit or
+     * 24-bit BMP file
+     */
+    public static BmpHeader readHeader(ByteBuffer buffer) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < FILE_HEADER_SIZE + INFO_HEADER_MIN_SIZE || buffer.get(0) != 'B' || buffer.get(1) != 'M') {
+            return null;
+        }
+        int pixelOffset = buffer.getInt(10);
+        int infoHeaderSize = buffer.getInt(14);
+        int width = buffer.getInt(18);
+        int height = buffer.getInt(22);
+        int bitCount = buffer.getShort(28);
+        int compression = buffer.getInt(30);
+        int colorsUsed = buffer.getInt(46);
+        if (infoHeaderSize < INFO_HEADER_MIN_SIZE || compression != BI_RGB || width <= 0 || height == 0
+                || (bitCount != 8 && bitCount != 24)) {
+            return null;
+        }
+        int paletteSize = bitCount == 8 ? (colorsUsed <= 0 || colorsUsed > 256 ? 256 : colorsUsed) : 0;
+        int paletteOffset = FILE_HEADER_SIZE + infoHeaderSize;
+        int stride = ((bitCount * width + 31) / 32) * 4;
+        long end = (long) pixelOffset + (long) stride * Math.abs(height);
+        if (paletteOffset + paletteSize * 4 > pixelOffset || end > buffer.limit()) {
+            return null;
+        }
+        return new BmpHeader(width, Math.abs(height), height > 0, bitCount, pixelOffset, stride, paletteOffset, paletteSize);
+    }
+
+    /**
+     * Maps the file into memory and creates the image over it.
+     *
+     * @param file BMP file
+     * @return read-only image or null, if the format is not supported
+     */
+    public static BufferedImage decode(File file) {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException ex) {
+            throw new SpriteUtilsException("Reading image failed: " + file.getAbsolutePath() + " " + ex.getMessage(), ex);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        BmpHeader header = readHeader(mapped);
+        if (header == null) {
+            return null;
+        }
+        ColorModel colorModel;
+        SampleModel sampleModel;
+        if (header.getBitCount() == 8) {
+            int size = header.getPaletteSize();
+            byte[] r = new byte[size];
+            byte[] g = new byte[size];
+            byte[] b = new byte[size];
+            for (int i = 0; i < size; i++) {
+                int entry = header.getPaletteOffset() + i * 4;
+                b[i] = mapped.get(entry);
+                g[i] = mapped.get(entry + 1);
+                r[i] = mapped.get(entry + 2);
+            }
+            colorModel = new IndexColorModel(8, size, r, g, b);
+            sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, header.getWidth(), header.getHeight(), 1, header.getStride(), new int[]{0});
+        } else {
+            colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), new int[]{8, 8, 8}, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+            sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, header.getWidth(), header.getHeight(), 3, header.getStride(), new int[]{2, 1, 0});
+        }
+        ByteBuffer pixels = mapped.slice(header.getPixelOffset(), header.getStride() * header.getHeight());
+        MappedDataBuffer dataBuffer = new MappedDataBuffer(pixels, header.getStride(), header.getHeight(), header.isBottomUp());
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Headers of a BMP file.
+     */
+    @Getter
+    public static class BmpHeader {
+
+        private final int width;
+        private final int height;
+        private final boolean bottomUp;
+        private final int bitCount;
+        private final int pixelOffset;
+        private final int stride;
+        private final int paletteOffset;
+        private final int paletteSize;
+
+        BmpHeader(int width, int height, boolean bottomUp, int bitCount, int pixelOffset, int stride, int paletteOffset, int paletteSize) {
+            this.width = width;
+            this.height = height;
+            this.bottomUp = bottomUp;
+            this.bitCount = bitCount;
+            this.pixelOffset = pixelOffset;
+            this.stride = stride;
+            this.paletteOffset = paletteOffset;
+            this.paletteSize = paletteSize;
+        }
+
+        /**
+         * @param y row of the image (0 is the top row)
+         * @return position of the row in the file
+         */
+        public long getRowOffset(int y) {
+            return pixelOffset + (long) (bottomUp ? height - 1 - y : y) * stride;
+        }
+    }
+
+    /**
+     * Read-only data buffer over the mapped pixel array. Element i is the
+     * byte i of the image in top-down order, so bottom-up files are flipped
+     * while being read.
+     */
+    static class MappedDataBuffer extends DataBuffer {
+
+        private final ByteBuffer pixels;
+        private final int stride;
+        private final int rows;
+        private final boolean bottomUp;
+
+        MappedDataBuffer(ByteBuffer pixels, int stride, int rows, boolean bottomUp) {
+            super(DataBuffer.TYPE_BYTE, stride * rows);
+            this.pixels = pixels;
+            this.stride = stride;
+            this.rows = rows;
+            this.bottomUp = bottomUp;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            if (!bottomUp) {
+                return pixels.get(i) & 0xff;
+            }
+            int row = i / stride;
+            return pixels.get((rows - 1 - row) * stride + (i - row * stride)) & 0xff;
+        }
+
+        @Override
+        public void setElem(int bank, int i, int value) {
+            throw new UnsupportedOperationException("Memory mapped image is read-only");
+        }
+
+        /**
+         * Copies the pixels in top-down order into the array.
+         *
+         * @param target array with at least stride * rows elements
+         */
+        void copyTo(byte[] target) {
+            ByteBuffer source = pixels.duplicate();
+            for (int row = 0; row < rows; row++) {
+                source.position((bottomUp ? rows - 1 - row : row) * stride);
+                source.get(target, row * stride, stride);
+            }
+        }
+    }
+}
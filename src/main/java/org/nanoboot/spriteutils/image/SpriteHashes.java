@@ -0,0 +1,120 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.image;
+
+import dev.mccue.guava.hash.Hasher;
+import dev.mccue.guava.hash.Hashing;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * Hashes of the pixels of sprites.
+ *
+ * Both hashes are computed from the RGB values, so sprites, which look the
+ * same, have the same exact hash, even if they come from images with
+ * different palettes.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class SpriteHashes {
+
+    private static final int DIFFERENCE_HASH_WIDTH = 9;
+    private static final int DIFFERENCE_HASH_HEIGHT = 8;
+
+    private SpriteHashes() {
+        //Not meant to be instantiated.
+    }
+
+    /**
+     * @param image sprite
+     * @return SHA-256 hash of the size and of the RGB values of the sprite
+     */
+    public static String calculateExactHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Hasher hasher = Hashing.sha256().newHasher().putInt(width).putInt(height);
+        int[] rgb = new int[width];
+        ByteBuffer bytes = ByteBuffer.allocate(width * Integer.BYTES);
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, rgb, 0, width);
+            bytes.clear();
+            bytes.asIntBuffer().put(rgb);
+            hasher.putBytes(bytes.array());
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Calculates the difference hash (dHash) of the sprite. The sprite is
+     * scaled to 9x8 grey pixels and every bit tells, whether a pixel is
+     * brighter than its right neighbour. Similar sprites have hashes with a
+     * small Hamming distance.
+     *
+     * @param image sprite
+     * @return 64 bit difference hash
+     */
+    public static long calculateDifferenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+        double[] grey = new double[DIFFERENCE_HASH_WIDTH * DIFFERENCE_HASH_HEIGHT];
+        for (int cy = 0; cy < DIFFERENCE_HASH_HEIGHT; cy++) {
+            int y0 = cy * height / DIFFERENCE_HASH_HEIGHT;
+            int y1 = Math.max(y0 + 1, (cy + 1) * height / DIFFERENCE_HASH_HEIGHT);
+            for (int cx = 0; cx < DIFFERENCE_HASH_WIDTH; cx++) {
+                int x0 = cx * width / DIFFERENCE_HASH_WIDTH;
+                int x1 = Math.max(x0 + 1, (cx + 1) * width / DIFFERENCE_HASH_WIDTH);
+                double sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        sum = sum + luminance(rgb[y * width + x]);
+                    }
+                }
+                grey[cy * DIFFERENCE_HASH_WIDTH + cx] = sum / ((y1 - y0) * (x1 - x0));
+            }
+        }
+        long hash = 0;
+        for (int cy = 0; cy < DIFFERENCE_HASH_HEIGHT; cy++) {
+            for (int cx = 0; cx < DIFFERENCE_HASH_WIDTH - 1; cx++) {
+                hash = hash << 1;
+                if (grey[cy * DIFFERENCE_HASH_WIDTH + cx] > grey[cy * DIFFERENCE_HASH_WIDTH + cx + 1]) {
+                    hash = hash | 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @param a hash
+     * @param b hash
+     * @return number of different bits
+     */
+    public static int getHammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static double luminance(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        return 0.299 * r + 0.587 * g + 0.114 * b;
+    }
+}
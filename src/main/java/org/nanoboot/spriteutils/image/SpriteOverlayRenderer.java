@@ -0,0 +1,244 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.image;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.BitSet;
+import org.nanoboot.spriteutils.core.SpriteUtilsException;
+
+/**
+ * Draws the sprite rectangles and their numbers directly into the raster of an
+ * image.
+ *
+ * The colours are converted to pixel values of the image once (for indexed
+ * images, the nearest colour of the palette is used). Rasters backed by one
+ * byte or int per pixel are written directly into their data array, other
+ * rasters through {@link WritableRaster#setDataElements(int, int, Object)}.
+ * Pixels outside of the image are ignored.
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+public class SpriteOverlayRenderer {
+
+    private static final int RED = 0;
+    private static final int WHITE = 1;
+    private static final int BLACK = 2;
+    private static final int[] RGB = new int[]{Color.RED.getRGB(), Color.WHITE.getRGB(), Color.BLACK.getRGB()};
+
+    public static final int GLYPH_WIDTH = 3;
+    public static final int GLYPH_HEIGHT = 5;
+    /**
+     * 3x5 glyphs of digits 0-9, one bit per pixel, the most significant bit
+     * is the top left pixel.
+     */
+    private static final int[] GLYPHS = new int[]{
+        0b111_101_101_101_111,
+        0b001_011_101_001_001,
+        0b111_001_010_100_111,
+        0b111_001_111_001_111,
+        0b001_010_111_001_001,
+        0b111_100_111_001_111,
+        0b111_100_111_101_111,
+        0b111_001_001_001_001,
+        0b111_101_111_101_111,
+        0b111_101_111_001_001};
+    /**
+     * The rectangle border is dashed: one pixel drawn, three pixels skipped.
+     */
+    private static final int DASH_PERIOD = 4;
+
+    private final WritableRaster raster;
+    private final int width;
+    private final int height;
+    private final Object[] pixels = new Object[RGB.length];
+    private final byte[] bytePixels = new byte[RGB.length];
+    private final int[] intPixels = new int[RGB.length];
+    private final BitSet dirtyRows = new BitSet();
+    private long pixelsDrawn;
+    private byte[] bytes;
+    private int[] ints;
+    private int base;
+    private int scanlineStride;
+
+    public SpriteOverlayRenderer(BufferedImage image) {
+        this.raster = image.getRaster();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        ColorModel colorModel = image.getColorModel();
+        for (int i = 0; i < RGB.length; i++) {
+            pixels[i] = colorModel.getDataElements(RGB[i], null);
+        }
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+        if (dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1
+                && sampleModel instanceof ComponentSampleModel
+                && sampleModel.getNumBands() == 1 && ((ComponentSampleModel) sampleModel).getPixelStride() == 1) {
+            ComponentSampleModel csm = (ComponentSampleModel) sampleModel;
+            bytes = ((DataBufferByte) dataBuffer).getData();
+            scanlineStride = csm.getScanlineStride();
+            base = dataBuffer.getOffset() + csm.getOffset(0, 0) - translateX - translateY * scanlineStride;
+            for (int i = 0; i < RGB.length; i++) {
+                bytePixels[i] = ((byte[]) pixels[i])[0];
+            }
+        } else if (dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1
+                && sampleModel instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel sppsm = (SinglePixelPackedSampleModel) sampleModel;
+            ints = ((DataBufferInt) dataBuffer).getData();
+            scanlineStride = sppsm.getScanlineStride();
+            base = dataBuffer.getOffset() + sppsm.getOffset(0, 0) - translateX - translateY * scanlineStride;
+            for (int i = 0; i < RGB.length; i++) {
+                intPixels[i] = ((int[]) pixels[i])[0];
+            }
+        }
+    }
+
+    /**
+     * Draws the number of the sprite into its bottom right corner and the
+     * dashed border of the sprite.
+     *
+     * @param x x of the sprite
+     * @param y y of the sprite
+     * @param spriteWidth width of the sprite
+     * @param spriteHeight height of the sprite
+     * @param number number to draw
+     */
+    public void drawSprite(int x, int y, int spriteWidth, int spriteHeight, int number) {
+        drawNumber(number, x + spriteWidth - 2, y + spriteHeight - 1);
+        drawRectangle(x, y, spriteWidth, spriteHeight);
+    }
+
+    /**
+     * Draws the dashed border of the rectangle, the right and the bottom
+     * border lie on x + width and y + height.
+     *
+     * @param x x
+     * @param y y
+     * @param rectangleWidth width
+     * @param rectangleHeight height
+     */
+    public void drawRectangle(int x, int y, int rectangleWidth, int rectangleHeight) {
+        int d = 0;
+        for (int i = 0; i < rectangleWidth; i++, d++) {
+            if (d % DASH_PERIOD == 0) {
+                plot(x + i, y, RED);
+            }
+        }
+        for (int i = 0; i < rectangleHeight; i++, d++) {
+            if (d % DASH_PERIOD == 0) {
+                plot(x + rectangleWidth, y + i, RED);
+            }
+        }
+        for (int i = 0; i < rectangleWidth; i++, d++) {
+            if (d % DASH_PERIOD == 0) {
+                plot(x + rectangleWidth - i, y + rectangleHeight, RED);
+            }
+        }
+        for (int i = 0; i < rectangleHeight; i++, d++) {
+            if (d % DASH_PERIOD == 0) {
+                plot(x, y + rectangleHeight - i, RED);
+            }
+        }
+    }
+
+    /**
+     * Draws the number (black digits on white background), so that its last
+     * digit ends at the given point.
+     *
+     * @param number number, must not be negative
+     * @param endX x of the right column of the last digit
+     * @param endY y of the bottom row of the digits
+     */
+    public void drawNumber(int number, int endX, int endY) {
+        if (number < 0) {
+            throw new SpriteUtilsException("Negative number is not supported: " + number);
+        }
+        fill(endX + 1, endY - GLYPH_HEIGHT, 1, GLYPH_HEIGHT + 1, WHITE);
+        int i = 0;
+        do {
+            drawDigit(number % 10, endX - (i * (GLYPH_WIDTH + 1)), endY);
+            number = number / 10;
+            i++;
+        } while (number > 0);
+    }
+
+    /**
+     * @return rows of the image, which were drawn to
+     */
+    public BitSet getDirtyRows() {
+        return dirtyRows;
+    }
+
+    /**
+     * @return number of pixels drawn so far, pixels drawn more times are
+     * counted more times
+     */
+    public long getPixelsDrawn() {
+        return pixelsDrawn;
+    }
+
+    private void drawDigit(int digit, int endX, int endY) {
+        int startX = endX - (GLYPH_WIDTH - 1);
+        int startY = endY - (GLYPH_HEIGHT - 1);
+        fill(startX - 1, startY - 1, GLYPH_WIDTH + 1, GLYPH_HEIGHT + 1, WHITE);
+        int glyph = GLYPHS[digit];
+        int bit = GLYPH_WIDTH * GLYPH_HEIGHT - 1;
+        for (int y = 0; y < GLYPH_HEIGHT; y++) {
+            for (int x = 0; x < GLYPH_WIDTH; x++, bit--) {
+                if ((glyph & (1 << bit)) != 0) {
+                    plot(startX + x, startY + y, BLACK);
+                }
+            }
+        }
+    }
+
+    private void fill(int x, int y, int fillWidth, int fillHeight, int color) {
+        for (int j = y; j < y + fillHeight; j++) {
+            for (int i = x; i < x + fillWidth; i++) {
+                plot(i, j, color);
+            }
+        }
+    }
+
+    private void plot(int x, int y, int color) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return;
+        }
+        dirtyRows.set(y);
+        pixelsDrawn++;
+        if (bytes != null) {
+            bytes[base + y * scanlineStride + x] = bytePixels[color];
+        } else if (ints != null) {
+            ints[base + y * scanlineStride + x] = intPixels[color];
+        } else {
+            raster.setDataElements(x, y, pixels[color]);
+        }
+    }
+}
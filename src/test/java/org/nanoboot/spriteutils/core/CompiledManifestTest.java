@@ -0,0 +1,133 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+class CompiledManifestTest {
+
+    private static final String CSV = """
+            file;group;numberInGroup;row;column;x;y;width;height;notes;tags
+            a.bmp;walk;1;1;1;0;0;16;16;first;hero
+            a.bmp;walk;2;1;2;;0;16;16;;
+            a.bmp;jump;1;2;1;0;16;8;24;;
+            b.bmp;idle;1;1;1;4;4;10;10;;
+            """;
+    /**
+     * Older than the time, in which a modified manifest is not compiled.
+     */
+    private static final long OLD = System.currentTimeMillis() - 60_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void openReturnsTheWrittenRows() throws IOException {
+        File csv = writeCsv(CSV, OLD);
+        SpriteSheet parsed = new SpriteSheet(csv);
+
+        CompiledManifest compiled = CompiledManifest.open(compiled(csv), csv);
+
+        assertNotNull(compiled);
+        assertEquals(4, compiled.size());
+        for (String file : List.of("a.bmp", "b.bmp")) {
+            assertEquals(parsed.getSpriteSheets(file), compiled.getRows(file));
+        }
+        assertEquals(parsed.getSpriteSheet("a.bmp", "jump", 1), compiled.find("a.bmp", "jump", 1));
+        assertNull(compiled.find("a.bmp", "jump", 2));
+        assertNull(compiled.getRows("c.bmp"));
+    }
+
+    @Test
+    void loadedSpriteSheetEqualsParsedOne() throws IOException {
+        File csv = writeCsv(CSV, OLD);
+        SpriteSheet parsed = new SpriteSheet(csv);
+        assertNotNull(CompiledManifest.open(compiled(csv), csv));
+
+        SpriteSheet loaded = new SpriteSheet(csv);
+
+        assertEquals(parsed.getSpriteSheets("a.bmp"), loaded.getSpriteSheets("a.bmp"));
+        assertEquals(parsed.getSpriteSheets("b.bmp"), loaded.getSpriteSheets("b.bmp"));
+    }
+
+    @Test
+    void openIgnoresManifestOfChangedCsv() throws IOException {
+        File csv = writeCsv(CSV, OLD);
+        new SpriteSheet(csv);
+
+        writeCsv(CSV + "b.bmp;idle;2;2;1;4;14;10;10;;\n", OLD);
+        assertNull(CompiledManifest.open(compiled(csv), csv));
+
+        writeCsv(CSV, OLD + 1000);
+        assertNull(CompiledManifest.open(compiled(csv), csv));
+    }
+
+    @Test
+    void openIgnoresTruncatedManifest() throws IOException {
+        File csv = writeCsv(CSV, OLD);
+        new SpriteSheet(csv);
+        File compiled = compiled(csv);
+        long length = compiled.length();
+
+        for (long truncatedLength : new long[]{length - 1, length / 2, 10, 0}) {
+            try (RandomAccessFile file = new RandomAccessFile(compiled, "rw")) {
+                file.setLength(truncatedLength);
+            }
+            assertNull(CompiledManifest.open(compiled, csv));
+        }
+    }
+
+    @Test
+    void writeSkipsCsvModifiedJustNow() throws IOException {
+        File csv = writeCsv(CSV, System.currentTimeMillis());
+
+        new SpriteSheet(csv);
+
+        assertFalse(compiled(csv).exists());
+        assertNull(CompiledManifest.open(compiled(csv), csv));
+    }
+
+    private File writeCsv(String text, long lastModified) throws IOException {
+        File csv = dir.resolve("spritesheet.csv").toFile();
+        Files.writeString(csv.toPath(), text);
+        csv.setLastModified(lastModified);
+        return csv;
+    }
+
+    private static File compiled(File csv) {
+        return new File(csv.getAbsolutePath() + CompiledManifest.SUFFIX);
+    }
+}
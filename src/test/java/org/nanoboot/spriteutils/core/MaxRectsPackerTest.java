@@ -0,0 +1,112 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+class MaxRectsPackerTest {
+
+    @Test
+    void fillsTheBinExactly() {
+        MaxRectsPacker packer = new MaxRectsPacker(64, 64);
+        List<Rectangle> placed = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Rectangle r = packer.insert(16, 16);
+            assertNotNull(r, "rectangle " + i);
+            placed.add(r);
+        }
+
+        assertNull(packer.insert(1, 1));
+        assertEquals(1.0, packer.getOccupancy());
+        assertInsideAndDisjoint(packer, placed);
+    }
+
+    @Test
+    void rejectsRectangleBiggerThanTheBin() {
+        MaxRectsPacker packer = new MaxRectsPacker(32, 16);
+
+        assertNull(packer.insert(33, 1));
+        assertNull(packer.insert(1, 17));
+        assertEquals(new Rectangle(0, 0, 32, 16), packer.insert(32, 16));
+    }
+
+    @Test
+    void usesTheFreeSpaceLeftByEarlierRectangles() {
+        MaxRectsPacker packer = new MaxRectsPacker(20, 10);
+        Rectangle wide = packer.insert(20, 4);
+        Rectangle left = packer.insert(10, 6);
+        Rectangle right = packer.insert(10, 6);
+
+        assertNotNull(wide);
+        assertNotNull(left);
+        assertNotNull(right);
+        assertEquals(1.0, packer.getOccupancy());
+        assertInsideAndDisjoint(packer, List.of(wide, left, right));
+    }
+
+    @Test
+    void placedRectanglesNeverOverlap() {
+        Random random = new Random(42);
+        for (int bin = 0; bin < 20; bin++) {
+            MaxRectsPacker packer = new MaxRectsPacker(128, 96);
+            List<Rectangle> placed = new ArrayList<>();
+            long area = 0;
+            for (int i = 0; i < 200; i++) {
+                int w = 1 + random.nextInt(24);
+                int h = 1 + random.nextInt(24);
+                Rectangle r = packer.insert(w, h);
+                if (r != null) {
+                    assertEquals(w, r.width);
+                    assertEquals(h, r.height);
+                    placed.add(r);
+                    area = area + (long) w * h;
+                }
+            }
+            assertFalse(placed.isEmpty());
+            assertEquals((double) area / (128 * 96), packer.getOccupancy());
+            assertInsideAndDisjoint(packer, placed);
+        }
+    }
+
+    private static void assertInsideAndDisjoint(MaxRectsPacker packer, List<Rectangle> placed) {
+        Rectangle bin = new Rectangle(0, 0, packer.getWidth(), packer.getHeight());
+        for (int i = 0; i < placed.size(); i++) {
+            Rectangle a = placed.get(i);
+            assertTrue(bin.contains(a), a + " is outside of the bin");
+            for (int j = i + 1; j < placed.size(); j++) {
+                assertFalse(a.intersects(placed.get(j)), a + " overlaps " + placed.get(j));
+            }
+        }
+    }
+}
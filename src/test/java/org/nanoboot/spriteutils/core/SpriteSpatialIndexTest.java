@@ -0,0 +1,144 @@
+///////////////////////////////////////////////////////////////////////////////////////////////
+// sprite-utils: Tool used to work with sprites
+// Copyright (C) 2024-2024 the original author or authors.
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2
+// of the License only.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+///////////////////////////////////////////////////////////////////////////////////////////////
+package org.nanoboot.spriteutils.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ * @author <a href="mailto:mail@robertvokac.com">Robert Vokac</a>
+ * @since 0.0.0
+ */
+class SpriteSpatialIndexTest {
+
+    @Test
+    void findAtUsesHalfOpenBounds() {
+        SpriteSheetRow a = row(1, 0, 0, 10, 10);
+        SpriteSheetRow b = row(2, 10, 0, 10, 10);
+        SpriteSpatialIndex index = new SpriteSpatialIndex(List.of(a, b));
+
+        assertEquals(List.of(a), index.findAt(0, 0));
+        assertEquals(List.of(a), index.findAt(9, 9));
+        assertEquals(List.of(b), index.findAt(10, 0));
+        assertEquals(List.of(), index.findAt(20, 0));
+        assertEquals(List.of(), index.findAt(0, 10));
+        assertEquals(List.of(), index.findAt(-1, 0));
+        assertTrue(index.findOverlaps().isEmpty());
+    }
+
+    @Test
+    void emptySpritesAreNeverFound() {
+        SpriteSheetRow empty = row(1, 5, 5, 0, 4);
+        SpriteSheetRow flat = row(2, 5, 5, 4, 0);
+        SpriteSpatialIndex index = new SpriteSpatialIndex(List.of(empty, flat));
+
+        assertEquals(List.of(), index.findIntersecting(0, 0, 20, 20));
+        assertTrue(index.findOverlaps().isEmpty());
+        assertEquals(List.of(), new SpriteSpatialIndex(List.of()).findAt(0, 0));
+    }
+
+    @Test
+    void findOutOfBoundsReturnsSpritesCrossingTheImageBorder() {
+        SpriteSheetRow inside = row(1, 0, 0, 8, 8);
+        SpriteSheetRow right = row(2, 4, 0, 8, 8);
+        SpriteSheetRow negative = row(3, -1, 0, 2, 2);
+        SpriteSpatialIndex index = new SpriteSpatialIndex(List.of(inside, right, negative));
+
+        assertEquals(List.of(right, negative), index.findOutOfBounds(10, 10));
+    }
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        for (int size : new int[]{1, 15, 16, 17, 300, 2000}) {
+            List<SpriteSheetRow> rows = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                rows.add(row(i + 1, random.nextInt(500), random.nextInt(500), random.nextInt(40), random.nextInt(40)));
+            }
+            SpriteSpatialIndex index = new SpriteSpatialIndex(rows);
+            assertEquals(size, index.size());
+
+            for (int q = 0; q < 200; q++) {
+                int x = random.nextInt(560) - 30;
+                int y = random.nextInt(560) - 30;
+                int width = random.nextInt(60);
+                int height = random.nextInt(60);
+                assertEquals(bruteForce(rows, x, y, width, height), index.findIntersecting(x, y, width, height),
+                        "region " + x + " " + y + " " + width + " " + height + " of " + size + " sprites");
+            }
+            assertEquals(bruteForceOverlaps(rows), toIds(index.findOverlaps()), size + " sprites");
+        }
+    }
+
+    private static List<SpriteSheetRow> bruteForce(List<SpriteSheetRow> rows, int x, int y, int width, int height) {
+        List<SpriteSheetRow> result = new ArrayList<>();
+        for (SpriteSheetRow r : rows) {
+            if (intersects(r, x, y, width, height)) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> bruteForceOverlaps(List<SpriteSheetRow> rows) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            SpriteSheetRow a = rows.get(i);
+            for (int j = i + 1; j < rows.size(); j++) {
+                SpriteSheetRow b = rows.get(j);
+                if (a.getWidth() > 0 && a.getHeight() > 0 && intersects(b, a.getX(), a.getY(), a.getWidth(), a.getHeight())) {
+                    result.add(a.getNumberInGroup() + "-" + b.getNumberInGroup());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<String> toIds(List<SpriteSheetRow[]> pairs) {
+        List<String> result = new ArrayList<>(pairs.size());
+        pairs.forEach(p -> result.add(p[0].getNumberInGroup() + "-" + p[1].getNumberInGroup()));
+        return result;
+    }
+
+    private static boolean intersects(SpriteSheetRow r, int x, int y, int width, int height) {
+        return r.getWidth() > 0 && r.getHeight() > 0 && width > 0 && height > 0
+                && r.getX() < x + width && x < r.getX() + r.getWidth()
+                && r.getY() < y + height && y < r.getY() + r.getHeight();
+    }
+
+    private static SpriteSheetRow row(int numberInGroup, int x, int y, int width, int height) {
+        SpriteSheetRow row = new SpriteSheetRow();
+        row.setFile("a.bmp");
+        row.setGroup("sprite");
+        row.setNumberInGroup(numberInGroup);
+        row.setRow(1);
+        row.setColumn(numberInGroup);
+        row.setX(x);
+        row.setY(y);
+        row.setWidth(width);
+        row.setHeight(height);
+        return row;
+    }
+}